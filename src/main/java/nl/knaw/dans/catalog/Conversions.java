@@ -20,10 +20,12 @@ import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import nl.knaw.dans.catalog.api.DatasetDto;
 import nl.knaw.dans.catalog.api.FileMetaDto;
+import nl.knaw.dans.catalog.api.UnconfirmedDatasetVersionExportDto;
 import nl.knaw.dans.catalog.api.VersionExportDto;
 import nl.knaw.dans.catalog.core.Dataset;
 import nl.knaw.dans.catalog.core.DatasetVersionExport;
 import nl.knaw.dans.catalog.core.FileMeta;
+import nl.knaw.dans.catalog.db.UnconfirmedExport;
 import org.mapstruct.AfterMapping;
 import org.mapstruct.Mapper;
 import org.mapstruct.Mapping;
@@ -42,13 +44,27 @@ import java.util.Map;
 public interface Conversions {
     FileMetaDto convert(FileMeta fileMeta);
 
-    @Mapping(target = "id", ignore = true)
-    @Mapping(target = "versionExport", ignore = true)
-    FileMeta convert(FileMetaDto fileMetaDto);
+    /**
+     * Converts a file meta DTO with the constructor of the file meta, so that its file content (and content key) is created once, instead of once per
+     * setter.
+     */
+    default FileMeta convert(FileMetaDto fileMetaDto) {
+        if (fileMetaDto == null) {
+            return null;
+        }
+        return new FileMeta(null, null, fileMetaDto.getFilepath(), fileMetaDto.getFileUri(), fileMetaDto.getByteSize(), fileMetaDto.getSha1sum());
+    }
 
+    /**
+     * Converts file meta DTOs to file metas. A missing list (null) is converted to an empty one, so that a version export without fileMetas has no
+     * file metas.
+     */
     @Named("mapFileMetaDtoListToFileMetaList")
     default List<FileMeta> mapFileMetaDtoListToFileMetaList(List<FileMetaDto> fileMetaDtos) {
         List<FileMeta> fileMetas = new ArrayList<>();
+        if (fileMetaDtos == null) {
+            return fileMetas;
+        }
         for (FileMetaDto fileMetaDto : fileMetaDtos) {
             FileMeta fileMeta = convert(fileMetaDto);
             fileMetas.add(fileMeta);
@@ -73,6 +89,9 @@ public interface Conversions {
 
     @Mapping(target = "id", ignore = true)
     @Mapping(target = "dataset", ignore = true)
+    @Mapping(target = "leaseExpiresTimestamp", ignore = true)
+    @Mapping(target = "lastAppendedChunk", ignore = true)
+    @Mapping(target = "rowVersion", ignore = true)
     @Mapping(target = "fileMetas", source = "versionExportDto.fileMetas", qualifiedByName = "mapFileMetaDtoListToFileMetaList")
     DatasetVersionExport convert(VersionExportDto versionExportDto);
 
@@ -83,9 +102,16 @@ public interface Conversions {
         }
     }
 
+    /**
+     * Copies the properties of the DTO to the version export, but leaves the file metas alone, so that they can be merged separately.
+     */
     @Mapping(target = "id", ignore = true)
     @Mapping(target = "dataset", ignore = true)
-    void updateVersionExportFromDto(VersionExportDto versionExportDto, @MappingTarget DatasetVersionExport datasetVersionExport);
+    @Mapping(target = "leaseExpiresTimestamp", ignore = true)
+    @Mapping(target = "lastAppendedChunk", ignore = true)
+    @Mapping(target = "rowVersion", ignore = true)
+    @Mapping(target = "fileMetas", ignore = true)
+    void updateVersionExportPropertiesFromDto(VersionExportDto versionExportDto, @MappingTarget DatasetVersionExport datasetVersionExport);
 
     @Named("mapVersionExportDtoListToDatasetVersionExportList")
     default List<DatasetVersionExport> mapVersionExportDtoListToDatasetVersionExportList(List<VersionExportDto> versionExportDtoList) {
@@ -123,6 +149,24 @@ public interface Conversions {
         // Not sure why mapstruct thinks the removeVersionExportsItem method is a property
     DatasetDto convert(Dataset dataset);
 
+    /**
+     * Like {@link #convert(DatasetVersionExport)}, but leaves out the file metas and the metadata, so that they are not loaded.
+     */
+    @Named("convertHeader")
+    @Mapping(target = "datasetNbn", source = "dataset.nbn")
+    @Mapping(target = "removeFileMetasItem", ignore = true)
+    @Mapping(target = "fileMetas", ignore = true)
+    @Mapping(target = "metadata", ignore = true)
+    VersionExportDto convertHeader(DatasetVersionExport datasetVersionExport);
+
+    /**
+     * Like {@link #convert(Dataset)}, but leaves out the version exports, so that they are not loaded.
+     */
+    @Named("convertHeader")
+    @Mapping(target = "versionExports", ignore = true)
+    @Mapping(target = "removeVersionExportsItem", ignore = true)
+    DatasetDto convertHeader(Dataset dataset);
+
     default URI convert(String value) {
         if (value == null) {
             return null;
@@ -140,4 +184,16 @@ public interface Conversions {
 
     List<VersionExportDto> convertDatasetVersionExportList(List<DatasetVersionExport> unconfirmed);
 
+    @Mapping(target = "datasetNbn", source = "dataset.nbn")
+    @Mapping(target = "storageRoot", source = "dataset.ocflStorageRoot")
+    UnconfirmedDatasetVersionExportDto convertToUnconfirmed(DatasetVersionExport datasetVersionExport);
+
+    List<UnconfirmedDatasetVersionExportDto> convertToUnconfirmedList(List<DatasetVersionExport> datasetVersionExports);
+
+    @Mapping(target = "datasetNbn", source = "nbn")
+    @Mapping(target = "storageRoot", source = "ocflStorageRoot")
+    UnconfirmedDatasetVersionExportDto convertToUnconfirmed(UnconfirmedExport unconfirmedExport);
+
+    List<UnconfirmedDatasetVersionExportDto> convertUnconfirmedExportList(List<UnconfirmedExport> unconfirmedExports);
+
 }
@@ -21,24 +21,42 @@ import io.dropwizard.assets.AssetsBundle;
 import io.dropwizard.core.Application;
 import io.dropwizard.core.setup.Bootstrap;
 import io.dropwizard.core.setup.Environment;
+import io.dropwizard.db.DataSourceFactory;
 import io.dropwizard.hibernate.HibernateBundle;
 import io.dropwizard.jersey.errors.ErrorEntityWriter;
 import io.dropwizard.jersey.errors.ErrorMessage;
+import io.dropwizard.migrations.MigrationsBundle;
 import io.dropwizard.views.common.View;
 import io.dropwizard.views.common.ViewBundle;
 import lombok.extern.slf4j.Slf4j;
+import nl.knaw.dans.catalog.cli.BulkLoadCommand;
 import nl.knaw.dans.catalog.config.DdVaultCatalogConfig;
+import nl.knaw.dans.catalog.db.CacheInvalidationListener;
 import nl.knaw.dans.catalog.db.DatasetDao;
 import nl.knaw.dans.catalog.db.DatasetVersionExportDao;
+import nl.knaw.dans.catalog.db.FileMetaDao;
+import nl.knaw.dans.catalog.db.InvalidationPublisher;
+import nl.knaw.dans.catalog.db.LookupCache;
+import nl.knaw.dans.catalog.db.MetadataRecompressionTask;
+import nl.knaw.dans.catalog.db.PostgresInvalidationPublisher;
+import nl.knaw.dans.catalog.db.SessionRunner;
+import nl.knaw.dans.catalog.resources.CatalogExportResource;
 import nl.knaw.dans.catalog.resources.DatasetApiResource;
+import nl.knaw.dans.catalog.resources.DatasetBulkImportResource;
 import nl.knaw.dans.catalog.resources.DatasetVersionExportApiResource;
 import nl.knaw.dans.catalog.resources.DefaultApiResource;
 import nl.knaw.dans.catalog.resources.ErrorView;
 import nl.knaw.dans.catalog.resources.IllegalArgumentExceptionMapper;
+import nl.knaw.dans.catalog.resources.ResolveResource;
+import nl.knaw.dans.catalog.resources.UnconfirmedDatasetVersionExportClaimsResource;
 import nl.knaw.dans.catalog.resources.UnconfirmedDatasetVersionExportsApiResource;
+import nl.knaw.dans.catalog.resources.VersionExportFilesResource;
+import nl.knaw.dans.catalog.resources.VersionExportMetadataResource;
+import nl.knaw.dans.catalog.resources.VersionExportStreamingResource;
 import nl.knaw.dans.lib.util.DefaultMediaTypeFilter;
 
 import javax.ws.rs.core.MediaType;
+import java.util.List;
 
 @Slf4j
 public class DdVaultCatalogApplication extends Application<DdVaultCatalogConfig> {
@@ -56,19 +74,57 @@ public class DdVaultCatalogApplication extends Application<DdVaultCatalogConfig>
     @Override
     public void initialize(final Bootstrap<DdVaultCatalogConfig> bootstrap) {
         bootstrap.addBundle(hibernateBundle);
+        bootstrap.addBundle(new MigrationsBundle<>() {
+
+            @Override
+            public DataSourceFactory getDataSourceFactory(DdVaultCatalogConfig configuration) {
+                return configuration.getDatabase();
+            }
+        });
         bootstrap.addBundle(new ViewBundle<>());
         bootstrap.addBundle(new AssetsBundle());
+        bootstrap.addCommand(new BulkLoadCommand());
         bootstrap.getObjectMapper().disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
     }
 
     @Override
     public void run(final DdVaultCatalogConfig configuration, final Environment environment) {
-        var datasetDao = new DatasetDao(hibernateBundle.getSessionFactory());
-        var datasetVersionExportDao = new DatasetVersionExportDao(hibernateBundle.getSessionFactory());
+        var lookupCacheConfig = configuration.getLookupCache();
+        var invalidationPublisher = lookupCacheConfig.isClusterInvalidation()
+            ? new PostgresInvalidationPublisher(lookupCacheConfig.getInvalidationChannel())
+            : InvalidationPublisher.NONE;
+        var nbnCache = new LookupCache("nbn", lookupCacheConfig, invalidationPublisher);
+        var swordTokenCache = new LookupCache("sword-token", lookupCacheConfig, invalidationPublisher);
+        var bagIdCache = new LookupCache("bag-id", lookupCacheConfig, invalidationPublisher);
+        var caches = List.of(nbnCache, swordTokenCache, bagIdCache);
+        for (var cache : caches) {
+            cache.registerMetrics(environment.metrics());
+        }
+        if (lookupCacheConfig.isClusterInvalidation()) {
+            environment.lifecycle().manage(new CacheInvalidationListener(configuration.getDatabase(), lookupCacheConfig.getInvalidationChannel(), caches));
+        }
+        var datasetDao = new DatasetDao(hibernateBundle.getSessionFactory(), nbnCache, swordTokenCache);
+        var datasetVersionExportDao = new DatasetVersionExportDao(hibernateBundle.getSessionFactory(), bagIdCache);
+        var fileMetaDao = new FileMetaDao(hibernateBundle.getSessionFactory());
+        var sessionRunner = new SessionRunner(hibernateBundle.getSessionFactory());
+        var metadataStorage = configuration.getMetadataStorage();
+        if (metadataStorage.isRecompress()) {
+            environment.lifecycle().manage(new MetadataRecompressionTask(sessionRunner, datasetVersionExportDao, metadataStorage.getCompression(),
+                metadataStorage.getRecompressBatchSize(), metadataStorage.getRecompressInterval().toJavaDuration()));
+        }
         environment.jersey().register(new DefaultApiResource());
-        environment.jersey().register(new DatasetApiResource(datasetDao));
+        environment.jersey().register(new DatasetApiResource(datasetDao, datasetVersionExportDao, fileMetaDao, environment.getObjectMapper()));
         environment.jersey().register(new DatasetVersionExportApiResource(datasetVersionExportDao));
         environment.jersey().register(new UnconfirmedDatasetVersionExportsApiResource(datasetVersionExportDao));
+        environment.jersey().register(new VersionExportMetadataResource(datasetVersionExportDao, sessionRunner));
+        environment.jersey().register(new UnconfirmedDatasetVersionExportClaimsResource(datasetVersionExportDao, configuration.getClaimLeaseDuration().toJavaDuration()));
+        environment.jersey().register(new CatalogExportResource(datasetDao, sessionRunner, environment.getObjectMapper()));
+        environment.jersey().register(new DatasetBulkImportResource(datasetDao, datasetVersionExportDao, sessionRunner, environment.getObjectMapper(),
+            environment.getValidator()));
+        environment.jersey().register(new VersionExportStreamingResource(datasetDao, datasetVersionExportDao, fileMetaDao, environment.getObjectMapper(),
+            environment.getValidator()));
+        environment.jersey().register(new VersionExportFilesResource(datasetDao, datasetVersionExportDao, fileMetaDao));
+        environment.jersey().register(new ResolveResource(datasetDao, datasetVersionExportDao));
         environment.jersey().register(new DefaultMediaTypeFilter());
         environment.jersey().register(new IllegalArgumentExceptionMapper());
         environment.jersey().register(new ErrorEntityWriter<ErrorMessage, View>(MediaType.TEXT_HTML_TYPE, View.class) {
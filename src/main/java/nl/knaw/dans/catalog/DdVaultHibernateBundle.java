@@ -16,20 +16,51 @@
 
 package nl.knaw.dans.catalog;
 
+import io.dropwizard.core.setup.Environment;
 import io.dropwizard.db.PooledDataSourceFactory;
 import io.dropwizard.hibernate.HibernateBundle;
 import nl.knaw.dans.catalog.config.DdVaultCatalogConfig;
 import nl.knaw.dans.catalog.core.Dataset;
 import nl.knaw.dans.catalog.core.DatasetVersionExport;
+import nl.knaw.dans.catalog.core.FileContent;
 import nl.knaw.dans.catalog.core.FileMeta;
+import nl.knaw.dans.catalog.core.MetadataCompression;
+import nl.knaw.dans.catalog.core.MetadataConverterBeanContainer;
+import nl.knaw.dans.catalog.db.SchemaMigrations;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.cfg.Configuration;
 
 public class DdVaultHibernateBundle extends HibernateBundle<DdVaultCatalogConfig> {
+    private MetadataCompression metadataCompression = MetadataCompression.DEFLATE;
+
     public DdVaultHibernateBundle() {
-        super(Dataset.class, DatasetVersionExport.class, FileMeta.class);
+        super(Dataset.class, DatasetVersionExport.class, FileContent.class, FileMeta.class);
+    }
+
+    @Override
+    public void run(DdVaultCatalogConfig configuration, Environment environment) throws Exception {
+        if (configuration.isMigrateDatabaseOnStartup()) {
+            // Before the session factory is built, because Hibernate validates the schema against the mappings
+            SchemaMigrations.migrate(configuration.getDatabase());
+        }
+        metadataCompression = configuration.getMetadataStorage().getCompression();
+        super.run(configuration, environment);
+    }
+
+    @Override
+    protected void configure(Configuration configuration) {
+        configuration.getProperties().put(AvailableSettings.BEAN_CONTAINER, new MetadataConverterBeanContainer(metadataCompression));
     }
 
     @Override
     public PooledDataSourceFactory getDataSourceFactory(DdVaultCatalogConfig ddVaultCatalogConfig) {
-        return ddVaultCatalogConfig.getDatabase();
+        var database = ddVaultCatalogConfig.getDatabase();
+        // Settings made explicitly in the database properties take precedence
+        var properties = database.getProperties();
+        var batching = ddVaultCatalogConfig.getJdbcBatching();
+        properties.putIfAbsent("hibernate.jdbc.batch_size", String.valueOf(batching.getBatchSize()));
+        properties.putIfAbsent("hibernate.order_inserts", String.valueOf(batching.isOrderInserts()));
+        properties.putIfAbsent("hibernate.order_updates", String.valueOf(batching.isOrderUpdates()));
+        return database;
     }
 }
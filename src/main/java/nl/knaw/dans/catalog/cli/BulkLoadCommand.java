@@ -0,0 +1,297 @@
+/*
+ * Copyright (C) 2022 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.catalog.cli;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.dropwizard.core.cli.ConfiguredCommand;
+import io.dropwizard.core.setup.Bootstrap;
+import io.dropwizard.db.DataSourceFactory;
+import lombok.extern.slf4j.Slf4j;
+import net.sourceforge.argparse4j.impl.Arguments;
+import net.sourceforge.argparse4j.inf.Namespace;
+import net.sourceforge.argparse4j.inf.Subparser;
+import nl.knaw.dans.catalog.Conversions;
+import nl.knaw.dans.catalog.api.DatasetDto;
+import nl.knaw.dans.catalog.config.DdVaultCatalogConfig;
+import nl.knaw.dans.catalog.core.ChecksumConverter;
+import nl.knaw.dans.catalog.core.Dataset;
+import nl.knaw.dans.catalog.core.DatasetVersionExport;
+import nl.knaw.dans.catalog.core.FileContent;
+import nl.knaw.dans.catalog.core.FileMeta;
+import nl.knaw.dans.catalog.core.MetadataCodec;
+import nl.knaw.dans.catalog.core.MetadataCompression;
+import nl.knaw.dans.catalog.core.UrnUuids;
+import nl.knaw.dans.catalog.db.DirectConnections;
+import nl.knaw.dans.convert.jpa.SwordTokenConverter;
+import nl.knaw.dans.convert.jpa.UriConverter;
+import org.mapstruct.factory.Mappers;
+import org.postgresql.PGConnection;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.PrimitiveIterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.LongStream;
+
+/**
+ * Loads datasets from newline-delimited JSON files (one {@link DatasetDto} per line, as written by GET /export) straight into the database with
+ * PostgreSQL's COPY. The lines are read in chunks, which are parsed and copied in parallel, each in a transaction of its own. Ids are taken from the
+ * same sequences that Hibernate uses, so the service can be started on the loaded database as usual.
+ * <p>
+ * This command is meant for (re)building a catalog while the service is stopped. The load stops at the first chunk that fails; chunks that were
+ * loaded before that stay in the database.
+ */
+@Slf4j
+public class BulkLoadCommand extends ConfiguredCommand<DdVaultCatalogConfig> {
+    // Must be equal to the allocationSize of the id sequences of the entities
+    private static final int ID_BLOCK_SIZE = 50;
+
+    private final Conversions conversions = Mappers.getMapper(Conversions.class);
+    private final SwordTokenConverter swordTokenConverter = new SwordTokenConverter();
+    private final UriConverter uriConverter = new UriConverter();
+    private final ChecksumConverter checksumConverter = new ChecksumConverter();
+
+    public BulkLoadCommand() {
+        super("load", "Loads datasets from NDJSON files into an (empty) catalog database, bypassing the service");
+    }
+
+    @Override
+    public void configure(Subparser subparser) {
+        super.configure(subparser);
+        subparser.addArgument("--threads")
+            .type(Integer.class)
+            .setDefault(Runtime.getRuntime().availableProcessors())
+            .help("The number of chunks to parse and copy in parallel");
+        subparser.addArgument("--chunk-size")
+            .dest("chunkSize")
+            .type(Integer.class)
+            .setDefault(1000)
+            .help("The number of datasets per chunk (and transaction)");
+        subparser.addArgument("files")
+            .nargs("+")
+            .type(Arguments.fileType().verifyIsFile().verifyCanRead())
+            .help("NDJSON files with one dataset per line");
+    }
+
+    @Override
+    protected void run(Bootstrap<DdVaultCatalogConfig> bootstrap, Namespace namespace, DdVaultCatalogConfig configuration) throws Exception {
+        int threads = namespace.getInt("threads");
+        int chunkSize = namespace.getInt("chunkSize");
+        List<File> files = namespace.getList("files");
+        var database = configuration.getDatabase();
+        var objectMapper = bootstrap.getObjectMapper();
+        var compression = configuration.getMetadataStorage().getCompression();
+        var loaded = new AtomicLong();
+
+        // A bounded queue, with the reading thread running chunks itself when it is full, keeps the number of chunks in memory limited
+        var executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(threads),
+            new ThreadPoolExecutor.CallerRunsPolicy());
+        var futures = new ArrayList<Future<?>>();
+        try {
+            for (var file : files) {
+                log.info("Reading {}", file);
+                try (var reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+                    var chunk = new ArrayList<String>(chunkSize);
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        if (line.isBlank()) {
+                            continue;
+                        }
+                        chunk.add(line);
+                        if (chunk.size() == chunkSize) {
+                            futures.add(submit(executor, database, objectMapper, compression, chunk, loaded));
+                            chunk = new ArrayList<>(chunkSize);
+                            checkCompleted(futures);
+                        }
+                    }
+                    if (!chunk.isEmpty()) {
+                        futures.add(submit(executor, database, objectMapper, compression, chunk, loaded));
+                    }
+                }
+            }
+            for (var future : futures) {
+                future.get();
+            }
+        }
+        finally {
+            executor.shutdownNow();
+        }
+        log.info("Loaded {} datasets", loaded.get());
+    }
+
+    private Future<?> submit(ThreadPoolExecutor executor, DataSourceFactory database, ObjectMapper objectMapper, MetadataCompression compression,
+        List<String> lines, AtomicLong loaded) {
+        return executor.submit(() -> {
+            var datasets = new ArrayList<Dataset>(lines.size());
+            for (var line : lines) {
+                datasets.add(conversions.convert(objectMapper.readValue(line, DatasetDto.class)));
+            }
+            try (var connection = DirectConnections.open(database)) {
+                connection.setAutoCommit(false);
+                copy(connection, datasets, compression);
+                connection.commit();
+            }
+            log.debug("Loaded chunk; {} datasets loaded so far", loaded.addAndGet(datasets.size()));
+            return null;
+        });
+    }
+
+    /**
+     * Fails fast: rethrows the failure of any chunk that has already completed, instead of reading the rest of the input first.
+     */
+    private void checkCompleted(List<Future<?>> futures) throws InterruptedException, ExecutionException {
+        var iterator = futures.iterator();
+        while (iterator.hasNext()) {
+            var future = iterator.next();
+            if (future.isDone()) {
+                future.get();
+                iterator.remove();
+            }
+        }
+    }
+
+    private void copy(Connection connection, List<Dataset> datasets, MetadataCompression compression) throws SQLException, IOException {
+        var versionExports = new ArrayList<DatasetVersionExport>();
+        var fileMetas = new ArrayList<FileMeta>();
+        for (var dataset : datasets) {
+            versionExports.addAll(dataset.getDatasetVersionExports());
+            for (var versionExport : dataset.getDatasetVersionExports()) {
+                fileMetas.addAll(versionExport.getFileMetas());
+            }
+        }
+        var datasetIds = reserveIds(connection, "dataset_id_seq", datasets.size());
+        datasets.forEach(dataset -> dataset.setId(datasetIds.nextLong()));
+        var versionExportIds = reserveIds(connection, "dataset_version_export_id_seq", versionExports.size());
+        versionExports.forEach(versionExport -> versionExport.setId(versionExportIds.nextLong()));
+        var fileMetaIds = reserveIds(connection, "file_meta_id_seq", fileMetas.size());
+        fileMetas.forEach(fileMeta -> fileMeta.setId(fileMetaIds.nextLong()));
+        // File metas with the same values share one file content, but only within a chunk
+        var contents = new HashMap<ByteBuffer, FileContent>();
+        for (var fileMeta : fileMetas) {
+            fileMeta.setContent(contents.computeIfAbsent(ByteBuffer.wrap(fileMeta.getContent().getContentKey()), key -> fileMeta.getContent()));
+        }
+        var fileContentIds = reserveIds(connection, "file_content_id_seq", contents.size());
+        var contentIds = new IdentityHashMap<FileContent, Long>();
+        contents.values().forEach(content -> contentIds.put(content, fileContentIds.nextLong()));
+
+        var datasetRows = new CopyRows();
+        for (var dataset : datasets) {
+            datasetRows.value(dataset.getId())
+                .value(dataset.getNbn())
+                .value(dataset.getDataversePid())
+                .value(swordTokenConverter.convertToDatabaseColumn(dataset.getSwordToken()))
+                .value(dataset.getDataSupplier())
+                .value(dataset.getOcflStorageRoot())
+                .endRow();
+        }
+        var versionExportRows = new CopyRows();
+        for (var versionExport : versionExports) {
+            versionExportRows.value(versionExport.getId())
+                .value(versionExport.getDataset().getId())
+                .value(UrnUuids.toUuid(versionExport.getBagId()).orElseThrow())
+                .value(versionExport.getOcflObjectVersionNumber())
+                .value(versionExport.getCreatedTimestamp())
+                .value(versionExport.getArchivedTimestamp())
+                .value(versionExport.getTitle())
+                .value(versionExport.getDataversePidVersion())
+                .value(versionExport.getOtherId())
+                .value(versionExport.getOtherIdVersion())
+                .value(versionExport.getMetadata() == null ? null : MetadataCodec.encode(versionExport.getMetadata(), compression))
+                .value(versionExport.getDeaccessioned())
+                .value(versionExport.getExporter())
+                .value(versionExport.getExporterVersion())
+                .value(versionExport.getSkeletonRecord())
+                .endRow();
+        }
+        var contentRows = new CopyRows();
+        for (var entry : contentIds.entrySet()) {
+            var content = entry.getKey();
+            var fileUuid = UrnUuids.toUuid(content.getFileUri());
+            contentRows.value(entry.getValue())
+                .value(content.getContentKey())
+                .value(fileUuid.orElse(null))
+                .value(fileUuid.isPresent() ? null : uriConverter.convertToDatabaseColumn(content.getFileUri()))
+                .value(content.getByteSize())
+                .value(checksumConverter.convertToDatabaseColumn(content.getSha1sum()))
+                .endRow();
+        }
+        var fileMetaRows = new CopyRows();
+        for (var fileMeta : fileMetas) {
+            fileMetaRows.value(fileMeta.getId())
+                .value(fileMeta.getVersionExport().getId())
+                .value(fileMeta.getFilepath())
+                .value(contentIds.get(fileMeta.getContent()))
+                .endRow();
+        }
+
+        // Parents first, because of the foreign keys
+        var copyApi = connection.unwrap(PGConnection.class).getCopyAPI();
+        copyApi.copyIn("COPY dataset (id, nbn, dataverse_pid, sword_token, data_supplier, ocfl_storage_root) FROM STDIN", datasetRows.toReader());
+        copyApi.copyIn("COPY dataset_version_export (id, dataset_id, bag_id, ocfl_object_version_number, created_timestamp, archived_timestamp, title, "
+            + "dataverse_pid_version, other_id, other_id_version, metadata, deaccessioned, exporter, exporter_version, skeleton_record) FROM STDIN",
+            versionExportRows.toReader());
+        copyApi.copyIn("COPY file_content (id, content_key, file_uuid, file_uri, byte_size, sha1sum) FROM STDIN", contentRows.toReader());
+        copyApi.copyIn("COPY file_meta (id, version_export_id, filepath, content_id) FROM STDIN", fileMetaRows.toReader());
+    }
+
+    /**
+     * Reserves ids the way Hibernate's pooled optimizer does: each value of the sequence is the highest id of a block of {@link #ID_BLOCK_SIZE} ids.
+     * The very first value of a fresh sequence (1) is a block of only one id, hence the loop.
+     */
+    private PrimitiveIterator.OfLong reserveIds(Connection connection, String sequence, int count) throws SQLException {
+        var ids = LongStream.builder();
+        long reserved = 0;
+        try (var statement = connection.prepareStatement("SELECT nextval(?) FROM generate_series(1, ?)")) {
+            while (reserved < count) {
+                statement.setString(1, sequence);
+                statement.setLong(2, (count - reserved + ID_BLOCK_SIZE - 1) / ID_BLOCK_SIZE);
+                try (var resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        for (var id : idBlock(resultSet.getLong(1))) {
+                            ids.add(id);
+                            reserved++;
+                        }
+                    }
+                }
+            }
+        }
+        return ids.build().iterator();
+    }
+
+    /**
+     * Returns the ids of the block of which the value of the sequence is the highest id.
+     *
+     * @param high the value of the sequence
+     * @return the ids of the block, in ascending order
+     */
+    static long[] idBlock(long high) {
+        return LongStream.rangeClosed(Math.max(1, high - ID_BLOCK_SIZE + 1), high).toArray();
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2022 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.catalog.cli;
+
+import java.io.Reader;
+import java.io.StringReader;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+
+/**
+ * Builds the input of a PostgreSQL COPY ... FROM STDIN statement in the default text format.
+ */
+class CopyRows {
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final StringBuilder text = new StringBuilder();
+    private boolean startOfRow = true;
+    private int rows;
+
+    CopyRows value(Object value) {
+        separate();
+        if (value == null) {
+            text.append("\\N");
+        }
+        else {
+            escape(value.toString());
+        }
+        return this;
+    }
+
+    CopyRows value(Boolean value) {
+        return value(value == null ? null : value ? "t" : "f");
+    }
+
+    /**
+     * Adds a timestamp the way Hibernate stores an {@link OffsetDateTime} in a column without time zone: as the local time of the JVM.
+     */
+    CopyRows value(OffsetDateTime value) {
+        return value(value == null ? null : value.atZoneSameInstant(ZoneId.systemDefault()).toLocalDateTime());
+    }
+
+    CopyRows value(byte[] value) {
+        if (value == null) {
+            return value((Object) null);
+        }
+        separate();
+        // The hex format of bytea, with the backslash escaped for the text format of COPY
+        text.append("\\\\x");
+        for (byte b : value) {
+            text.append(HEX[(b >> 4) & 0xf]).append(HEX[b & 0xf]);
+        }
+        return this;
+    }
+
+    void endRow() {
+        text.append('\n');
+        startOfRow = true;
+        rows++;
+    }
+
+    int getRows() {
+        return rows;
+    }
+
+    Reader toReader() {
+        return new StringReader(text.toString());
+    }
+
+    private void separate() {
+        if (!startOfRow) {
+            text.append('\t');
+        }
+        startOfRow = false;
+    }
+
+    private void escape(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\':
+                    text.append("\\\\");
+                    break;
+                case '\t':
+                    text.append("\\t");
+                    break;
+                case '\n':
+                    text.append("\\n");
+                    break;
+                case '\r':
+                    text.append("\\r");
+                    break;
+                default:
+                    text.append(c);
+            }
+        }
+    }
+}
@@ -18,6 +18,7 @@ package nl.knaw.dans.catalog.config;
 
 import io.dropwizard.core.Configuration;
 import io.dropwizard.db.DataSourceFactory;
+import io.dropwizard.util.Duration;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 
@@ -30,4 +31,24 @@ public class DdVaultCatalogConfig extends Configuration {
     @Valid
     @NotNull
     private DataSourceFactory database = new DataSourceFactory();
+
+    /**
+     * Whether to apply pending schema migrations when the service starts. Otherwise, they must be applied with the 'db migrate' command.
+     */
+    private boolean migrateDatabaseOnStartup = false;
+
+    @Valid
+    @NotNull
+    private JdbcBatchingConfig jdbcBatching = new JdbcBatchingConfig();
+
+    @NotNull
+    private Duration claimLeaseDuration = Duration.hours(1);
+
+    @Valid
+    @NotNull
+    private MetadataStorageConfig metadataStorage = new MetadataStorageConfig();
+
+    @Valid
+    @NotNull
+    private LookupCacheConfig lookupCache = new LookupCacheConfig();
 }
@@ -0,0 +1,49 @@
+/*
+ * Copyright (C) 2022 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package nl.knaw.dans.catalog.config;
+
+import io.dropwizard.util.Duration;
+import lombok.Data;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Pattern;
+
+@Data
+public class LookupCacheConfig {
+    /**
+     * The maximum number of entries per cache. Set to 0 to disable caching.
+     */
+    @Min(0)
+    private long maximumSize = 100_000;
+
+    /**
+     * How long the result of a lookup (the id of the entity found, or the fact that none was found) is cached.
+     */
+    @NotNull
+    private Duration expireAfterWrite = Duration.seconds(30);
+
+    /**
+     * Whether invalidations are exchanged with other nodes of the service through PostgreSQL's LISTEN/NOTIFY. Required when more than one node
+     * uses the same database; may only be turned off for a single node.
+     */
+    private boolean clusterInvalidation = true;
+
+    @NotNull
+    @Pattern(regexp = "[a-z_][a-z0-9_]*")
+    private String invalidationChannel = "dd_vault_catalog_cache";
+}
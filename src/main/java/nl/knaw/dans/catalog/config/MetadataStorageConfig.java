@@ -0,0 +1,41 @@
+/*
+ * Copyright (C) 2022 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package nl.knaw.dans.catalog.config;
+
+import io.dropwizard.util.Duration;
+import lombok.Data;
+import nl.knaw.dans.catalog.core.MetadataCompression;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+@Data
+public class MetadataStorageConfig {
+    @NotNull
+    private MetadataCompression compression = MetadataCompression.DEFLATE;
+
+    /**
+     * Whether to rewrite the metadata that is not yet stored with the configured compression in the background.
+     */
+    private boolean recompress = true;
+
+    @Min(1)
+    private int recompressBatchSize = 100;
+
+    @NotNull
+    private Duration recompressInterval = Duration.seconds(10);
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2022 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.catalog.core;
+
+import javax.persistence.AttributeConverter;
+import javax.persistence.Converter;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Stores a checksum as binary if it is a lower case hex string, which halves its size (a SHA-1 takes 21 bytes instead of 40). Any other value is
+ * stored as UTF-8, so that it is read back unchanged. The first byte tells the two forms apart, as with {@link MetadataCodec}.
+ */
+@Converter
+public class ChecksumConverter implements AttributeConverter<String, byte[]> {
+    private static final byte TEXT = 0;
+    private static final byte HEX = 1;
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    @Override
+    public byte[] convertToDatabaseColumn(String checksum) {
+        if (checksum == null) {
+            return null;
+        }
+        if (!isLowerCaseHex(checksum)) {
+            var text = checksum.getBytes(StandardCharsets.UTF_8);
+            var stored = new byte[text.length + 1];
+            stored[0] = TEXT;
+            System.arraycopy(text, 0, stored, 1, text.length);
+            return stored;
+        }
+        var stored = new byte[checksum.length() / 2 + 1];
+        stored[0] = HEX;
+        for (int i = 1; i < stored.length; i++) {
+            stored[i] = (byte) Integer.parseInt(checksum, 2 * i - 2, 2 * i, 16);
+        }
+        return stored;
+    }
+
+    @Override
+    public String convertToEntityAttribute(byte[] stored) {
+        if (stored == null) {
+            return null;
+        }
+        if (stored.length == 0 || stored[0] == TEXT) {
+            return new String(Arrays.copyOfRange(stored, Math.min(1, stored.length), stored.length), StandardCharsets.UTF_8);
+        }
+        if (stored[0] != HEX) {
+            throw new IllegalStateException("Unknown checksum format: " + stored[0]);
+        }
+        var checksum = new StringBuilder(2 * (stored.length - 1));
+        for (int i = 1; i < stored.length; i++) {
+            checksum.append(HEX_DIGITS[(stored[i] >> 4) & 0xf]).append(HEX_DIGITS[stored[i] & 0xf]);
+        }
+        return checksum.toString();
+    }
+
+    private static boolean isLowerCaseHex(String value) {
+        if (value.isEmpty() || value.length() % 2 != 0) {
+            return false;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (!(c >= '0' && c <= '9' || c >= 'a' && c <= 'f')) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -16,38 +16,43 @@
 package nl.knaw.dans.catalog.core;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 import lombok.ToString;
-import nl.knaw.dans.convert.jpa.UrnUuidConverter;
-import nl.knaw.dans.validation.UrnUuid;
+import org.hibernate.annotations.OptimisticLock;
 
+import javax.persistence.Basic;
 import javax.persistence.CascadeType;
 import javax.persistence.Column;
 import javax.persistence.Convert;
 import javax.persistence.Entity;
+import javax.persistence.FetchType;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.JoinColumn;
-import javax.persistence.Lob;
 import javax.persistence.ManyToOne;
 import javax.persistence.OneToMany;
+import javax.persistence.SequenceGenerator;
 import javax.persistence.Table;
 import javax.persistence.UniqueConstraint;
+import javax.persistence.Version;
 import javax.validation.constraints.NotNull;
 import java.net.URI;
 import java.time.OffsetDateTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.UUID;
 
 @Entity
 @Table(name = "dataset_version_export", uniqueConstraints = {
     @UniqueConstraint(columnNames = {
         "dataset_id", "ocfl_object_version_number"
-    })
+    }),
+    @UniqueConstraint(columnNames = { "bag_id" })
 })
 @Getter
 @Setter
@@ -56,7 +61,8 @@ import java.util.List;
 @NoArgsConstructor
 public class DatasetVersionExport {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "dataset_version_export_id_seq")
+    @SequenceGenerator(name = "dataset_version_export_id_seq", sequenceName = "dataset_version_export_id_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne
@@ -65,10 +71,11 @@ public class DatasetVersionExport {
     @JsonIgnore
     private Dataset dataset;
 
-    @Column(name = "bag_id", nullable = false)
-    @Convert(converter = UrnUuidConverter.class)
-    @UrnUuid
-    private URI bagId;
+    // Stored as a native UUID, like the file UUID of a file content; the bag ID itself is the urn:uuid URI
+    @Column(name = "bag_id", nullable = false, columnDefinition = "uuid")
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private UUID bagUuid;
 
     @Column(name = "ocfl_object_version_number", nullable = false)
     private Integer ocflObjectVersionNumber;
@@ -79,6 +86,11 @@ public class DatasetVersionExport {
     @Column(name = "archived_timestamp")
     private OffsetDateTime archivedTimestamp;
 
+    // Set while a transfer worker has claimed the export for archiving. Excluded from the row version, so that claiming does not change the ETag
+    @OptimisticLock(excluded = true)
+    @Column(name = "lease_expires_timestamp")
+    private OffsetDateTime leaseExpiresTimestamp;
+
     @Column(name = "title", length = 300)
     private String title;
 
@@ -91,8 +103,11 @@ public class DatasetVersionExport {
     @Column(name = "other_id_version")
     private String otherIdVersion;
 
-    @Lob
-    @Column(name = "metadata")
+    // Lazy loading of basic attributes requires bytecode enhancement (see pom.xml)
+    @Basic(fetch = FetchType.LAZY)
+    @Column(name = "metadata", columnDefinition = "bytea")
+    @Convert(converter = MetadataConverter.class)
+    @ToString.Exclude
     private String metadata;
 
     @Column(name = "deaccessioned")
@@ -107,10 +122,34 @@ public class DatasetVersionExport {
     @Column(name = "skeleton_record")
     private Boolean skeletonRecord;
 
+    // Sequence number of the last chunk of file metas appended to the skeleton record
+    @Column(name = "last_appended_chunk")
+    private Integer lastAppendedChunk;
+
     @OneToMany(mappedBy = "versionExport", cascade = CascadeType.ALL, orphanRemoval = true)
     @ToString.Exclude
     private List<FileMeta> fileMetas = new ArrayList<>();
 
+    // Incremented whenever the version export or its file metas change, but not its lease, so that it can serve as the ETag of the version export
+    @Version
+    @Column(name = "row_version", nullable = false)
+    private Long rowVersion;
+
+    public URI getBagId() {
+        return bagUuid == null ? null : UrnUuids.toUri(bagUuid);
+    }
+
+    /**
+     * Sets the bag ID. A bag ID in upper or mixed case is accepted; {@link #getBagId()} returns it in the canonical (lower case) form.
+     *
+     * @param bagId the bag ID; must be a urn:uuid
+     * @throws IllegalArgumentException if the bag ID is not a urn:uuid
+     */
+    public void setBagId(URI bagId) {
+        this.bagUuid = bagId == null ? null : UrnUuids.parse(bagId)
+            .orElseThrow(() -> new IllegalArgumentException("Bag ID is not a urn:uuid: " + bagId));
+    }
+
     public void addFileMeta(FileMeta fileMeta) {
         fileMetas.add(fileMeta);
         fileMeta.setVersionExport(this);
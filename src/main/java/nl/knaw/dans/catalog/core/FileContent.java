@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2022 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.catalog.core;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+import nl.knaw.dans.convert.jpa.UriConverter;
+
+import javax.persistence.Column;
+import javax.persistence.Convert;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.SequenceGenerator;
+import javax.persistence.Table;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.UUID;
+
+/**
+ * The content of a file entry: everything but the filepath. Most files are the same in consecutive versions of a dataset, so the file metas of those
+ * versions share one file content. File contents are immutable and addressed by a key that is a hash of their values; a file meta that changes gets
+ * another file content.
+ * <p>
+ * The key covers the file URI, byte size and checksum, not the filepath: a file content holds everything but the filepath, and its key must cover
+ * all of its values, or two different contents would get the same key. The filepath stays in the file meta, so a file that is only moved or renamed
+ * still shares its content. Contents are only shared when the exporter gives an unchanged file the same URI in the next version; if it mints a new
+ * URI for every version, every version gets its own contents and nothing is saved.
+ * <p>
+ * Every version export still has one file meta (version export, filepath, content) per file. Adding a version therefore writes a row per file,
+ * not per changed file; what sharing saves is the width of those rows. A shared per-version manifest would make adding a version proportional to
+ * the changes, but would make reading the files of one version a merge over the versions before it, which is what the paged files endpoint and the
+ * export need to be cheap.
+ */
+@Entity
+@Table(name = "file_content", indexes = @Index(name = "file_content_content_key_idx", columnList = "content_key"))
+@Getter
+@ToString
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+public class FileContent {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "file_content_id_seq")
+    @SequenceGenerator(name = "file_content_id_seq", sequenceName = "file_content_id_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(name = "content_key", nullable = false, length = 32)
+    @ToString.Exclude
+    private byte[] contentKey;
+
+    // A urn:uuid file URI is stored as a native UUID; any other URI as a string. Exactly one of the two is set.
+    @Column(name = "file_uuid", columnDefinition = "uuid")
+    @Getter(AccessLevel.NONE)
+    private UUID fileUuid;
+
+    @Column(name = "file_uri")
+    @Convert(converter = UriConverter.class)
+    @Getter(AccessLevel.NONE)
+    private URI otherFileUri;
+
+    @Column(name = "byte_size", nullable = false)
+    private Long byteSize;
+
+    @Column(name = "sha1sum", nullable = false, columnDefinition = "bytea")
+    @Convert(converter = ChecksumConverter.class)
+    private String sha1sum;
+
+    public FileContent(URI fileUri, Long byteSize, String sha1sum) {
+        this.fileUuid = fileUri == null ? null : UrnUuids.toUuid(fileUri).orElse(null);
+        this.otherFileUri = fileUuid == null ? fileUri : null;
+        this.byteSize = byteSize;
+        this.sha1sum = sha1sum;
+        this.contentKey = key(fileUri, byteSize, sha1sum);
+    }
+
+    public URI getFileUri() {
+        return fileUuid != null ? UrnUuids.toUri(fileUuid) : otherFileUri;
+    }
+
+    /**
+     * Computes the key of a file content: the SHA-256 hash of the file URI, byte size and checksum, separated by newlines and encoded in UTF-8.
+     * Migration 010 computes the same key in SQL.
+     *
+     * @param fileUri  the file URI
+     * @param byteSize the byte size
+     * @param sha1sum  the checksum
+     * @return the key
+     */
+    public static byte[] key(URI fileUri, Long byteSize, String sha1sum) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest((fileUri + "\n" + byteSize + "\n" + sha1sum).getBytes(StandardCharsets.UTF_8));
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
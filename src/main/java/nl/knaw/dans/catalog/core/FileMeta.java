@@ -16,21 +16,21 @@
 package nl.knaw.dans.catalog.core;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
-import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 import lombok.ToString;
-import nl.knaw.dans.convert.jpa.UriConverter;
 
+import javax.persistence.CascadeType;
 import javax.persistence.Column;
-import javax.persistence.Convert;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
+import javax.persistence.SequenceGenerator;
 import javax.persistence.Table;
 import javax.persistence.UniqueConstraint;
 import javax.validation.constraints.NotNull;
@@ -38,17 +38,16 @@ import java.net.URI;
 
 @Entity
 @Table(name = "file_meta", uniqueConstraints = {
-    @UniqueConstraint(columnNames = { "version_export_id", "filepath" }),
-    @UniqueConstraint(columnNames = { "version_export_id", "file_uri" })
-})
+    @UniqueConstraint(columnNames = { "version_export_id", "filepath" })
+}, indexes = @Index(name = "file_meta_content_id_idx", columnList = "content_id"))
 @Getter
 @Setter
 @ToString
-@AllArgsConstructor
 @NoArgsConstructor
 public class FileMeta {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "file_meta_id_seq")
+    @SequenceGenerator(name = "file_meta_id_seq", sequenceName = "file_meta_id_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne
@@ -61,13 +60,40 @@ public class FileMeta {
     @Column(name = "filepath", nullable = false, length = 520)
     private String filepath;
 
-    @Column(name = "file_uri", nullable = false)
-    @Convert(converter = UriConverter.class)
-    private URI fileUri;
+    @ManyToOne(optional = false, cascade = CascadeType.PERSIST)
+    @JoinColumn(name = "content_id", nullable = false)
+    private FileContent content;
 
-    @Column(name = "byte_size", nullable = false)
-    private Long byteSize;
-    
-    @Column(name = "sha1sum", nullable = false) 
-    private String sha1sum;
+    public FileMeta(Long id, DatasetVersionExport versionExport, String filepath, URI fileUri, Long byteSize, String sha1sum) {
+        this.id = id;
+        this.versionExport = versionExport;
+        this.filepath = filepath;
+        this.content = new FileContent(fileUri, byteSize, sha1sum);
+    }
+
+    public URI getFileUri() {
+        return content == null ? null : content.getFileUri();
+    }
+
+    public Long getByteSize() {
+        return content == null ? null : content.getByteSize();
+    }
+
+    public String getSha1sum() {
+        return content == null ? null : content.getSha1sum();
+    }
+
+    // File contents are shared, so changing one of their values means replacing the file content
+
+    public void setFileUri(URI fileUri) {
+        content = new FileContent(fileUri, getByteSize(), getSha1sum());
+    }
+
+    public void setByteSize(Long byteSize) {
+        content = new FileContent(getFileUri(), byteSize, getSha1sum());
+    }
+
+    public void setSha1sum(String sha1sum) {
+        content = new FileContent(getFileUri(), getByteSize(), sha1sum);
+    }
 }
@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2022 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.catalog.core;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Encodes and decodes the stored form of the metadata of a version export: a marker byte (see {@link MetadataCompression}) followed by the UTF-8
+ * encoded metadata, compressed or not. Values that were stored before the marker was introduced start with a printable character and are read as
+ * uncompressed UTF-8.
+ */
+public final class MetadataCodec {
+    private MetadataCodec() {
+    }
+
+    public static byte[] encode(String metadata, MetadataCompression compression) {
+        var bytes = metadata.getBytes(StandardCharsets.UTF_8);
+        var out = new ByteArrayOutputStream(bytes.length / 4 + 1);
+        out.write(compression.getMarker());
+        try {
+            switch (compression) {
+                case NONE:
+                    out.write(bytes);
+                    break;
+                case DEFLATE:
+                    try (var deflater = new DeflaterOutputStream(out)) {
+                        deflater.write(bytes);
+                    }
+                    break;
+            }
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    public static String decode(byte[] stored) {
+        try (var in = openStream(new ByteArrayInputStream(stored))) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Wraps a stream of the stored form, so that it yields the UTF-8 encoded metadata.
+     *
+     * @param stored the stored form
+     * @return a stream of the UTF-8 encoded metadata
+     * @throws IOException if the stored form cannot be read
+     */
+    public static InputStream openStream(InputStream stored) throws IOException {
+        var in = new PushbackInputStream(stored, 1);
+        int marker = in.read();
+        if (marker == -1) {
+            return in;
+        }
+        var compression = MetadataCompression.fromMarker(marker);
+        if (compression.isEmpty()) {
+            // Stored before the marker was introduced
+            in.unread(marker);
+            return in;
+        }
+        return compression.get() == MetadataCompression.DEFLATE ? new InflaterInputStream(in) : in;
+    }
+
+    /**
+     * Returns the compression of the stored form, based on its first byte.
+     *
+     * @param stored the stored form, or at least its first byte
+     * @return the compression, or empty if the value was stored before the marker was introduced
+     */
+    public static Optional<MetadataCompression> getCompression(byte[] stored) {
+        if (stored == null || stored.length == 0) {
+            return Optional.empty();
+        }
+        return MetadataCompression.fromMarker(stored[0]);
+    }
+}
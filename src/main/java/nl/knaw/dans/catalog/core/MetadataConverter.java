@@ -0,0 +1,55 @@
+/*
+ * Copyright (C) 2022 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.catalog.core;
+
+import lombok.NonNull;
+
+import javax.persistence.AttributeConverter;
+import javax.persistence.Converter;
+
+/**
+ * Stores the metadata of a version export in the format of {@link MetadataCodec}. Hibernate obtains the converter through its bean container, so
+ * the service registers a {@link MetadataConverterBeanContainer} that supplies a converter with the configured compression. Where no such container
+ * is registered, Hibernate uses the no-argument constructor, which writes {@link MetadataCompression#DEFLATE}.
+ */
+@Converter
+public class MetadataConverter implements AttributeConverter<String, byte[]> {
+    private final MetadataCompression compression;
+
+    public MetadataConverter() {
+        this(MetadataCompression.DEFLATE);
+    }
+
+    public MetadataConverter(@NonNull MetadataCompression compression) {
+        this.compression = compression;
+    }
+
+    @Override
+    public byte[] convertToDatabaseColumn(String metadata) {
+        if (metadata == null) {
+            return null;
+        }
+        return MetadataCodec.encode(metadata, compression);
+    }
+
+    @Override
+    public String convertToEntityAttribute(byte[] stored) {
+        if (stored == null) {
+            return null;
+        }
+        return MetadataCodec.decode(stored);
+    }
+}
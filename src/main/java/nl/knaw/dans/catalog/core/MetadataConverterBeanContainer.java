@@ -0,0 +1,53 @@
+/*
+ * Copyright (C) 2022 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.catalog.core;
+
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.resource.beans.container.spi.BeanContainer;
+import org.hibernate.resource.beans.container.spi.ContainedBean;
+import org.hibernate.resource.beans.spi.BeanInstanceProducer;
+
+/**
+ * Hibernate bean container that supplies the {@link MetadataConverter} with the configured compression. All other beans (other converters, listeners)
+ * are created by Hibernate's fallback producer, as they would be without a bean container. Register it with the
+ * {@link org.hibernate.cfg.AvailableSettings#BEAN_CONTAINER} setting.
+ */
+@RequiredArgsConstructor
+public class MetadataConverterBeanContainer implements BeanContainer {
+    @NonNull
+    private final MetadataCompression compression;
+
+    @Override
+    public <B> ContainedBean<B> getBean(Class<B> beanType, LifecycleOptions lifecycleOptions, BeanInstanceProducer fallbackProducer) {
+        if (beanType == MetadataConverter.class) {
+            var converter = beanType.cast(new MetadataConverter(compression));
+            return () -> converter;
+        }
+        var bean = fallbackProducer.produceBeanInstance(beanType);
+        return () -> bean;
+    }
+
+    @Override
+    public <B> ContainedBean<B> getBean(String name, Class<B> beanType, LifecycleOptions lifecycleOptions, BeanInstanceProducer fallbackProducer) {
+        var bean = fallbackProducer.produceBeanInstance(name, beanType);
+        return () -> bean;
+    }
+
+    @Override
+    public void stop() {
+    }
+}
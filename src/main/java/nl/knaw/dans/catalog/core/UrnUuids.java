@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2022 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.catalog.core;
+
+import java.net.URI;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+/**
+ * Conversion between urn:uuid URIs and UUIDs.
+ */
+public class UrnUuids {
+    private static final String PREFIX = "urn:uuid:";
+    private static final Pattern UUID_PATTERN = Pattern.compile("[0-9a-fA-F]{8}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{12}");
+
+    /**
+     * Returns the UUID of a urn:uuid URI in any case. The scheme, the namespace and the hex digits of a urn:uuid are all case-insensitive (RFC 4122), so
+     * {@code URN:UUID:1B4E28BA-...} and {@code urn:uuid:1b4e28ba-...} name the same UUID. Use {@code toUri(parse(uri))} to normalize a URI.
+     *
+     * @param uri the URI
+     * @return the UUID, or empty if the URI is not a urn:uuid
+     */
+    public static Optional<UUID> parse(URI uri) {
+        var value = uri.toString();
+        if (!value.regionMatches(true, 0, PREFIX, 0, PREFIX.length())) {
+            return Optional.empty();
+        }
+        // UUID.fromString also accepts groups with fewer digits, so check the form first
+        var suffix = value.substring(PREFIX.length());
+        if (!UUID_PATTERN.matcher(suffix).matches()) {
+            return Optional.empty();
+        }
+        return Optional.of(UUID.fromString(suffix));
+    }
+
+    /**
+     * Returns the UUID of a urn:uuid URI, if the URI is in the canonical (lower case) form, so that {@link #toUri(UUID)} gives back the same URI. For
+     * values that must be stored exactly as given, like file URIs; identifiers that may be compared in any case use {@link #parse(URI)}.
+     *
+     * @param uri the URI
+     * @return the UUID, or empty if the URI is not a canonical urn:uuid
+     */
+    public static Optional<UUID> toUuid(URI uri) {
+        var value = uri.toString();
+        if (!value.startsWith(PREFIX)) {
+            return Optional.empty();
+        }
+        try {
+            var uuid = UUID.fromString(value.substring(PREFIX.length()));
+            return uuid.toString().equals(value.substring(PREFIX.length())) ? Optional.of(uuid) : Optional.empty();
+        }
+        catch (IllegalArgumentException e) {
+            return Optional.empty();
+        }
+    }
+
+    public static URI toUri(UUID uuid) {
+        return URI.create(PREFIX + uuid);
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2022 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.catalog.db;
+
+import io.dropwizard.db.DataSourceFactory;
+import io.dropwizard.lifecycle.Managed;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Listens for the invalidations published by {@link PostgresInvalidationPublisher} on other nodes and evicts the matching entries from the local
+ * caches. It uses a dedicated connection, outside the connection pool (see {@link DirectConnections}). Whenever it (re)connects, the local caches
+ * are cleared, because notifications may have been missed while it was not listening.
+ */
+@Slf4j
+public class CacheInvalidationListener implements Managed, Runnable {
+    private static final int POLL_TIMEOUT_MILLIS = 1000;
+    private static final long RECONNECT_DELAY_MILLIS = 5000;
+
+    private final DataSourceFactory dataSourceFactory;
+    private final String channel;
+    private final Map<String, LookupCache> caches;
+
+    private volatile boolean running;
+    private Thread thread;
+
+    public CacheInvalidationListener(DataSourceFactory dataSourceFactory, String channel, Collection<LookupCache> caches) {
+        this.dataSourceFactory = dataSourceFactory;
+        this.channel = channel;
+        this.caches = caches.stream().collect(Collectors.toMap(LookupCache::getName, Function.identity()));
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        thread = new Thread(this, "cache-invalidation-listener");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public void stop() throws InterruptedException {
+        running = false;
+        thread.interrupt();
+        thread.join(POLL_TIMEOUT_MILLIS * 5);
+    }
+
+    @Override
+    public void run() {
+        while (running) {
+            try (var connection = DirectConnections.open(dataSourceFactory)) {
+                try (var statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + channel);
+                }
+                caches.values().forEach(LookupCache::invalidateAll);
+                log.info("Listening for cache invalidations on channel {}", channel);
+                var pgConnection = connection.unwrap(PGConnection.class);
+                while (running) {
+                    var notifications = pgConnection.getNotifications(POLL_TIMEOUT_MILLIS);
+                    if (notifications != null) {
+                        for (var notification : notifications) {
+                            evict(notification.getParameter());
+                        }
+                    }
+                }
+            }
+            catch (SQLException e) {
+                if (running) {
+                    log.warn("Lost connection for cache invalidations; reconnecting in {} ms", RECONNECT_DELAY_MILLIS, e);
+                    try {
+                        Thread.sleep(RECONNECT_DELAY_MILLIS);
+                    }
+                    catch (InterruptedException ie) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+            }
+        }
+    }
+
+    private void evict(String payload) {
+        var separator = payload.indexOf(' ');
+        if (separator < 0) {
+            log.warn("Ignoring malformed cache invalidation: {}", payload);
+            return;
+        }
+        var cache = caches.get(payload.substring(0, separator));
+        if (cache != null) {
+            cache.evict(payload.substring(separator + 1));
+        }
+    }
+}
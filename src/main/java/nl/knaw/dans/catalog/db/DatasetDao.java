@@ -17,21 +17,44 @@ package nl.knaw.dans.catalog.db;
 
 import io.dropwizard.hibernate.AbstractDAO;
 import nl.knaw.dans.catalog.core.Dataset;
+import nl.knaw.dans.catalog.core.DatasetVersionExport;
+import org.hibernate.ScrollMode;
 import org.hibernate.SessionFactory;
 import org.hibernate.exception.ConstraintViolationException;
+import org.hibernate.jpa.QueryHints;
 
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaQuery;
 import javax.persistence.criteria.Root;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 public class DatasetDao extends AbstractDAO<Dataset> {
+    private final LookupCache nbnCache;
+    private final LookupCache swordTokenCache;
 
     public DatasetDao(SessionFactory sessionFactory) {
+        this(sessionFactory, LookupCache.disabled("nbn"), LookupCache.disabled("sword-token"));
+    }
+
+    public DatasetDao(SessionFactory sessionFactory, LookupCache nbnCache, LookupCache swordTokenCache) {
         super(sessionFactory);
+        this.nbnCache = nbnCache;
+        this.swordTokenCache = swordTokenCache;
     }
 
     public Optional<Dataset> findByNbn(String nbn) {
+        return nbnCache.find(nbn, this::queryByNbn, Dataset::getId, this::get);
+    }
+
+    public Optional<Dataset> findBySwordToken(String swordToken) {
+        return swordTokenCache.find(swordToken, this::queryBySwordToken, Dataset::getId, this::get);
+    }
+
+    private Optional<Dataset> queryByNbn(String nbn) {
         CriteriaBuilder cb = currentSession().getCriteriaBuilder();
         CriteriaQuery<Dataset> cq = cb.createQuery(Dataset.class);
         Root<Dataset> root = cq.from(Dataset.class);
@@ -40,7 +63,7 @@ public class DatasetDao extends AbstractDAO<Dataset> {
         return Optional.ofNullable(dataset);
     }
 
-    public Optional<Dataset> findBySwordToken(String swordToken) {
+    private Optional<Dataset> queryBySwordToken(String swordToken) {
         CriteriaBuilder cb = currentSession().getCriteriaBuilder();
         CriteriaQuery<Dataset> cq = cb.createQuery(Dataset.class);
         Root<Dataset> root = cq.from(Dataset.class);
@@ -49,7 +72,101 @@ public class DatasetDao extends AbstractDAO<Dataset> {
         return Optional.ofNullable(dataset);
     }
 
+    public List<Dataset> findByNbns(Collection<String> nbns) {
+        return queryByAttributeIn("nbn", nbns);
+    }
+
+    public List<Dataset> findBySwordTokens(Collection<String> swordTokens) {
+        return queryByAttributeIn("swordToken", swordTokens);
+    }
+
+    public List<Dataset> findByDataversePids(Collection<String> dataversePids) {
+        return queryByAttributeIn("dataversePid", dataversePids);
+    }
+
+    /**
+     * Finds the datasets of which the attribute has one of the values, with a single query. The lookup caches are not used.
+     */
+    private List<Dataset> queryByAttributeIn(String attribute, Collection<String> values) {
+        if (values.isEmpty()) {
+            return List.of();
+        }
+        CriteriaBuilder cb = currentSession().getCriteriaBuilder();
+        CriteriaQuery<Dataset> cq = cb.createQuery(Dataset.class);
+        Root<Dataset> root = cq.from(Dataset.class);
+        cq.select(root).where(root.get(attribute).in(values));
+        return currentSession().createQuery(cq).list();
+    }
+
+    /**
+     * Loads the version exports of a dataset, and optionally their metadata and file metas, with one query for each. Without this, the metadata (a
+     * lazy attribute) and the file metas of each version export would be loaded with a query of their own when they are read, so that converting a
+     * dataset with n version exports would take 2n + 2 queries instead of at most four. Must be called before the version exports of the dataset are
+     * read.
+     *
+     * @param dataset   the dataset
+     * @param metadata  whether to load the metadata of the version exports
+     * @param fileMetas whether to load the file metas (and their file contents) of the version exports
+     */
+    public void fetchVersionExports(Dataset dataset, boolean metadata, boolean fileMetas) {
+        // Separate queries, because Hibernate does not reliably combine 'fetch all properties' with a join fetch of a collection. The second query
+        // finds the version exports of the first in the persistence context and only adds their file metas.
+        if (metadata) {
+            // HQL, because the Criteria API has no equivalent of 'fetch all properties', which loads the lazy attributes
+            currentSession().createQuery("select v from DatasetVersionExport v fetch all properties where v.dataset = :dataset",
+                    DatasetVersionExport.class)
+                .setParameter("dataset", dataset)
+                .list();
+        }
+        if (fileMetas) {
+            currentSession().createQuery("select distinct v from DatasetVersionExport v left join fetch v.fileMetas f left join fetch f.content"
+                    + " where v.dataset = :dataset", DatasetVersionExport.class)
+                .setParameter("dataset", dataset)
+                .setHint(QueryHints.HINT_PASS_DISTINCT_THROUGH, false)
+                .list();
+        }
+    }
+
+    @FunctionalInterface
+    public interface Visitor {
+        void visit(Dataset dataset) throws IOException;
+    }
+
+    /**
+     * Passes all datasets to the visitor, in id order. The rows are read with a forward-only cursor, and the persistence context is cleared after each
+     * dataset, so that memory use does not grow with the size of the catalog or with the number of datasets per fetch. The visitor must not hold on
+     * to the entities it is passed.
+     *
+     * @param fetchSize the number of rows to fetch from the database per round trip
+     * @param visitor   the visitor
+     * @return the number of datasets visited
+     * @throws IOException if the visitor throws it
+     */
+    public long visitAll(int fetchSize, Visitor visitor) throws IOException {
+        var session = currentSession();
+        CriteriaBuilder cb = session.getCriteriaBuilder();
+        CriteriaQuery<Dataset> cq = cb.createQuery(Dataset.class);
+        Root<Dataset> root = cq.from(Dataset.class);
+        cq.select(root).orderBy(cb.asc(root.get("id")));
+
+        long count = 0;
+        try (var results = session.createQuery(cq).setFetchSize(fetchSize).setReadOnly(true).scroll(ScrollMode.FORWARD_ONLY)) {
+            while (results.next()) {
+                visitor.visit((Dataset) results.get(0));
+                // The visitor may have loaded the whole graph of the dataset, including its file metas
+                session.clear();
+                count++;
+            }
+        }
+        return count;
+    }
+
     public Dataset save(Dataset dataset) {
+        nbnCache.invalidate(currentSession(), dataset.getNbn());
+        swordTokenCache.invalidate(currentSession(), dataset.getSwordToken());
+        FileContents.share(currentSession(), dataset.getDatasetVersionExports().stream()
+            .flatMap(datasetVersionExport -> datasetVersionExport.getFileMetas().stream())
+            .collect(Collectors.toList()));
         try {
             if (dataset.getId() == null || get(dataset.getId()) == null) {
                 persist(dataset);
@@ -16,55 +16,430 @@
 package nl.knaw.dans.catalog.db;
 
 import io.dropwizard.hibernate.AbstractDAO;
+import lombok.extern.slf4j.Slf4j;
+import nl.knaw.dans.catalog.core.Dataset;
 import nl.knaw.dans.catalog.core.DatasetVersionExport;
+import nl.knaw.dans.catalog.core.MetadataCodec;
+import nl.knaw.dans.catalog.core.MetadataCompression;
+import nl.knaw.dans.catalog.core.UrnUuids;
 import nl.knaw.dans.validation.UrnUuid;
+import org.hibernate.LockMode;
+import org.hibernate.LockOptions;
 import org.hibernate.SessionFactory;
 
+import javax.persistence.criteria.CompoundSelection;
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.CriteriaUpdate;
+import javax.persistence.criteria.Join;
+import javax.persistence.criteria.Path;
 import javax.persistence.criteria.Predicate;
 import javax.persistence.criteria.Root;
+import javax.persistence.criteria.Subquery;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.io.OutputStream;
 import java.net.URI;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
-import java.util.stream.Stream;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.UUID;
 
+@Slf4j
 public class DatasetVersionExportDao extends AbstractDAO<DatasetVersionExport> {
+    // Bytes of stored metadata read per query when the metadata is streamed
+    private static final int METADATA_SLICE_SIZE = 1024 * 1024;
+
+    private final LookupCache bagIdCache;
+
     public DatasetVersionExportDao(SessionFactory sessionFactory) {
+        this(sessionFactory, LookupCache.disabled("bag-id"));
+    }
+
+    public DatasetVersionExportDao(SessionFactory sessionFactory, LookupCache bagIdCache) {
         super(sessionFactory);
+        this.bagIdCache = bagIdCache;
     }
 
     public DatasetVersionExport findByBagId(@UrnUuid URI bagId) {
-        
-        
+        // Any case of a bag ID names the same version export, so the cache is keyed on the canonical form
+        var bagUuid = UrnUuids.parse(bagId);
+        if (bagUuid.isEmpty()) {
+            return null;
+        }
+        var key = UrnUuids.toUri(bagUuid.get()).toString();
+        return bagIdCache.find(key, k -> queryByBagId(bagUuid.get()), DatasetVersionExport::getId, this::get).orElse(null);
+    }
+
+    /**
+     * Removes the cached lookups of the bag IDs, because a version export with one of these bag IDs is being added or changed.
+     *
+     * @param bagIds the bag IDs
+     */
+    public void invalidateBagIds(URI... bagIds) {
+        for (var bagId : bagIds) {
+            if (bagId != null) {
+                UrnUuids.parse(bagId).ifPresent(uuid -> bagIdCache.invalidate(currentSession(), UrnUuids.toUri(uuid).toString()));
+            }
+        }
+    }
+
+    private Optional<DatasetVersionExport> queryByBagId(UUID bagUuid) {
         CriteriaBuilder cb = currentSession().getCriteriaBuilder();
         CriteriaQuery<DatasetVersionExport> cq = cb.createQuery(DatasetVersionExport.class);
         Root<DatasetVersionExport> root = cq.from(DatasetVersionExport.class);
+        cq.select(root).where(cb.equal(root.get("bagUuid"), bagUuid));
+        return Optional.ofNullable(currentSession().createQuery(cq).uniqueResult());
+    }
 
-        Predicate bagIdPredicate = cb.equal(root.get("bagId"), bagId);
-        cq.where(bagIdPredicate);
+    /**
+     * Finds the version exports with the specified bag IDs, and their datasets, with a single query. The bag ID cache is bypassed.
+     *
+     * @param bagIds the bag IDs
+     * @return the version exports that were found
+     */
+    public List<DatasetVersionExport> findByBagIds(Collection<URI> bagIds) {
+        var bagUuids = new ArrayList<UUID>(bagIds.size());
+        for (var bagId : bagIds) {
+            UrnUuids.parse(bagId).ifPresent(bagUuids::add);
+        }
+        return queryByAttributeIn("bagUuid", bagUuids);
+    }
 
-        return uniqueResult(currentSession().createQuery(cq));
+    /**
+     * Finds the version exports with the specified other IDs, and their datasets, with a single query. An other ID may be shared by several versions.
+     *
+     * @param otherIds the other IDs
+     * @return the version exports that were found
+     */
+    public List<DatasetVersionExport> findByOtherIds(Collection<String> otherIds) {
+        return queryByAttributeIn("otherId", otherIds);
     }
 
-    public void add(DatasetVersionExport datasetVersionExport) {
-        currentSession().save(datasetVersionExport);
+    private List<DatasetVersionExport> queryByAttributeIn(String attribute, Collection<?> values) {
+        if (values.isEmpty()) {
+            return List.of();
+        }
+        CriteriaBuilder cb = currentSession().getCriteriaBuilder();
+        CriteriaQuery<DatasetVersionExport> cq = cb.createQuery(DatasetVersionExport.class);
+        Root<DatasetVersionExport> root = cq.from(DatasetVersionExport.class);
+        // Otherwise the (eager) dataset of each version export is loaded with a query of its own
+        root.fetch("dataset");
+        cq.select(root).where(root.get(attribute).in(values));
+        return currentSession().createQuery(cq).list();
     }
 
-    public Stream<DatasetVersionExport> streamAll() {
+    public Optional<DatasetVersionExport> findByNbnAndVersion(String nbn, int ocflObjectVersionNumber) {
         CriteriaBuilder cb = currentSession().getCriteriaBuilder();
         CriteriaQuery<DatasetVersionExport> cq = cb.createQuery(DatasetVersionExport.class);
         Root<DatasetVersionExport> root = cq.from(DatasetVersionExport.class);
-        cq.select(root);
-        return currentSession().createQuery(cq).stream();
+        Join<DatasetVersionExport, Dataset> dataset = root.join("dataset");
+        cq.select(root).where(
+            cb.equal(dataset.get("nbn"), nbn),
+            cb.equal(root.get("ocflObjectVersionNumber"), ocflObjectVersionNumber));
+        return Optional.ofNullable(currentSession().createQuery(cq).uniqueResult());
     }
 
-    public List<DatasetVersionExport> findUnconfirmed(int limit, int offset) {
+    /**
+     * Like {@link #findByNbnAndVersion(String, int)}, but also locks the row of the version export (and only that row) until the end of the
+     * transaction, so that concurrent changes to it are serialized.
+     *
+     * @param nbn                     the NBN of the dataset
+     * @param ocflObjectVersionNumber the OCFL object version number of the version export
+     * @return the version export, if it exists
+     */
+    public Optional<DatasetVersionExport> findByNbnAndVersionForUpdate(String nbn, int ocflObjectVersionNumber) {
         CriteriaBuilder cb = currentSession().getCriteriaBuilder();
         CriteriaQuery<DatasetVersionExport> cq = cb.createQuery(DatasetVersionExport.class);
         Root<DatasetVersionExport> root = cq.from(DatasetVersionExport.class);
 
+        Subquery<Long> datasetId = cq.subquery(Long.class);
+        Root<Dataset> dataset = datasetId.from(Dataset.class);
+        datasetId.select(dataset.get("id")).where(cb.equal(dataset.get("nbn"), nbn));
+
+        cq.select(root).where(
+            cb.equal(root.get("dataset").get("id"), datasetId),
+            cb.equal(root.get("ocflObjectVersionNumber"), ocflObjectVersionNumber));
+        return Optional.ofNullable(currentSession().createQuery(cq)
+            .setLockOptions(new LockOptions(LockMode.PESSIMISTIC_WRITE))
+            .uniqueResult());
+    }
+
+    /**
+     * Returns the revision of a version export, without loading the version export. Used to answer conditional requests.
+     *
+     * @param nbn                     the NBN of the dataset
+     * @param ocflObjectVersionNumber the OCFL object version number of the version export
+     * @return the revision, if the version export exists
+     */
+    public Optional<VersionExportRevision> findRevisionByNbnAndVersion(String nbn, int ocflObjectVersionNumber) {
+        CriteriaBuilder cb = currentSession().getCriteriaBuilder();
+        CriteriaQuery<VersionExportRevision> cq = cb.createQuery(VersionExportRevision.class);
+        Root<DatasetVersionExport> root = cq.from(DatasetVersionExport.class);
+        Join<DatasetVersionExport, Dataset> dataset = root.join("dataset");
+        cq.select(constructRevision(cb, root)).where(
+            cb.equal(dataset.get("nbn"), nbn),
+            cb.equal(root.get("ocflObjectVersionNumber"), ocflObjectVersionNumber));
+        return Optional.ofNullable(currentSession().createQuery(cq).uniqueResult());
+    }
+
+    /**
+     * Like {@link #findRevisionByNbnAndVersion(String, int)}, but for the version export with the specified bag ID.
+     *
+     * @param bagId the bag ID
+     * @return the revision, if the version export exists
+     */
+    public Optional<VersionExportRevision> findRevisionByBagId(@UrnUuid URI bagId) {
+        var bagUuid = UrnUuids.parse(bagId);
+        if (bagUuid.isEmpty()) {
+            return Optional.empty();
+        }
+        CriteriaBuilder cb = currentSession().getCriteriaBuilder();
+        CriteriaQuery<VersionExportRevision> cq = cb.createQuery(VersionExportRevision.class);
+        Root<DatasetVersionExport> root = cq.from(DatasetVersionExport.class);
+        cq.select(constructRevision(cb, root)).where(cb.equal(root.get("bagUuid"), bagUuid.get()));
+        return Optional.ofNullable(currentSession().createQuery(cq).uniqueResult());
+    }
+
+    private static CompoundSelection<VersionExportRevision> constructRevision(CriteriaBuilder cb, Root<DatasetVersionExport> root) {
+        return cb.construct(VersionExportRevision.class,
+            root.get("id"),
+            root.get("rowVersion"),
+            root.get("archivedTimestamp"),
+            root.get("skeletonRecord"));
+    }
+
+    public Optional<Integer> findMaxVersionNumber(String nbn) {
+        CriteriaBuilder cb = currentSession().getCriteriaBuilder();
+        CriteriaQuery<Integer> cq = cb.createQuery(Integer.class);
+        Root<DatasetVersionExport> root = cq.from(DatasetVersionExport.class);
+        Join<DatasetVersionExport, Dataset> dataset = root.join("dataset");
+        cq.select(cb.max(root.<Integer>get("ocflObjectVersionNumber"))).where(cb.equal(dataset.get("nbn"), nbn));
+        return Optional.ofNullable(currentSession().createQuery(cq).uniqueResult());
+    }
+
+    /**
+     * Sets the archived timestamp of a version export that does not have one yet, with a single UPDATE statement. Any lease on the version export is
+     * released, and its row version is incremented.
+     *
+     * @param nbn                     the NBN of the dataset
+     * @param ocflObjectVersionNumber the OCFL object version number of the version export
+     * @param archivedTimestamp       the archived timestamp
+     * @return true if the version export was updated, false if it does not exist or already had an archived timestamp
+     */
+    public boolean setArchivedTimestamp(String nbn, int ocflObjectVersionNumber, OffsetDateTime archivedTimestamp) {
+        CriteriaBuilder cb = currentSession().getCriteriaBuilder();
+        CriteriaUpdate<DatasetVersionExport> cu = cb.createCriteriaUpdate(DatasetVersionExport.class);
+        Root<DatasetVersionExport> root = cu.from(DatasetVersionExport.class);
+
+        Subquery<Long> datasetId = cu.subquery(Long.class);
+        Root<Dataset> dataset = datasetId.from(Dataset.class);
+        datasetId.select(dataset.get("id")).where(cb.equal(dataset.get("nbn"), nbn));
+
+        cu.set(root.<OffsetDateTime>get("archivedTimestamp"), archivedTimestamp);
+        cu.set(root.<OffsetDateTime>get("leaseExpiresTimestamp"), cb.nullLiteral(OffsetDateTime.class));
+        // Bulk updates bypass the versioning of the entity
+        cu.set(root.<Long>get("rowVersion"), cb.sum(root.<Long>get("rowVersion"), 1L));
+        cu.where(
+            cb.equal(root.get("dataset").get("id"), datasetId),
+            cb.equal(root.get("ocflObjectVersionNumber"), ocflObjectVersionNumber),
+            cb.isNull(root.get("archivedTimestamp")));
+        return currentSession().createQuery(cu).executeUpdate() == 1;
+    }
+
+    /**
+     * Copies the UTF-8 encoded metadata of a version export to the output stream. The PostgreSQL driver reads a bytea value into memory as a whole,
+     * so the stored value is read in slices of {@link #METADATA_SLICE_SIZE} bytes, each with a query of its own, and decompressed as it is copied.
+     * If the row is changed while it is being copied (for example by the recompression task), the copy fails instead of mixing two values.
+     *
+     * @param nbn                     the NBN of the dataset
+     * @param ocflObjectVersionNumber the OCFL object version number of the version export
+     * @param outputStream            the output stream to copy the metadata to
+     * @return false if the version export does not exist, true otherwise
+     */
+    public boolean copyMetadata(String nbn, int ocflObjectVersionNumber, OutputStream outputStream) {
+        return currentSession().doReturningWork(connection -> {
+            long id;
+            String rowState;
+            // xmin identifies the version of the row, so that the slices can be checked to come from the same one
+            try (var statement = connection.prepareStatement("SELECT v.id, v.xmin::text, v.metadata IS NULL FROM dataset_version_export v "
+                + "JOIN dataset d ON d.id = v.dataset_id "
+                + "WHERE d.nbn = ? AND v.ocfl_object_version_number = ?")) {
+                statement.setString(1, nbn);
+                statement.setInt(2, ocflObjectVersionNumber);
+                try (var resultSet = statement.executeQuery()) {
+                    if (!resultSet.next()) {
+                        return false;
+                    }
+                    if (resultSet.getBoolean(3)) {
+                        return true;
+                    }
+                    id = resultSet.getLong(1);
+                    rowState = resultSet.getString(2);
+                }
+            }
+            try (var slice = connection.prepareStatement("SELECT substring(metadata FROM ? FOR ?) FROM dataset_version_export "
+                + "WHERE id = ? AND xmin::text = ?")) {
+                slice.setLong(3, id);
+                slice.setString(4, rowState);
+                try (var metadata = MetadataCodec.openStream(new SliceInputStream(slice))) {
+                    metadata.transferTo(outputStream);
+                }
+                catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            return true;
+        });
+    }
+
+    /**
+     * Reads a bytea value slice by slice. The statement selects the slice; its first two parameters are the (1-based) start and the length.
+     */
+    private static class SliceInputStream extends InputStream {
+        private final PreparedStatement slice;
+        private byte[] buffer = new byte[0];
+        private int position;
+        // An int, because substring takes int arguments; a bytea value is at most 1 GB
+        private int start = 1;
+        private boolean last;
+
+        SliceInputStream(PreparedStatement slice) {
+            this.slice = slice;
+        }
+
+        @Override
+        public int read() throws IOException {
+            var b = new byte[1];
+            return read(b, 0, 1) == -1 ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            while (position == buffer.length) {
+                if (last) {
+                    return -1;
+                }
+                readNextSlice();
+            }
+            int n = Math.min(len, buffer.length - position);
+            System.arraycopy(buffer, position, b, off, n);
+            position += n;
+            return n;
+        }
+
+        private void readNextSlice() throws IOException {
+            try {
+                slice.setInt(1, start);
+                slice.setInt(2, METADATA_SLICE_SIZE);
+                try (var resultSet = slice.executeQuery()) {
+                    if (!resultSet.next()) {
+                        throw new IOException("Metadata changed while it was being read");
+                    }
+                    var bytes = resultSet.getBytes(1);
+                    buffer = bytes == null ? new byte[0] : bytes;
+                }
+            }
+            catch (SQLException e) {
+                throw new IOException(e);
+            }
+            position = 0;
+            start += buffer.length;
+            last = buffer.length < METADATA_SLICE_SIZE;
+        }
+    }
+
+    /**
+     * Rewrites the metadata of the next batch of version exports (in id order) that is not stored with the specified compression.
+     *
+     * @param afterId     the id after which to start
+     * @param batchSize   the number of version exports to examine
+     * @param compression the compression to store the metadata with
+     * @return the id of the last version export examined, or empty if there were no more version exports after afterId
+     */
+    public OptionalLong recompressMetadata(long afterId, int batchSize, MetadataCompression compression) {
+        return currentSession().doReturningWork(connection -> {
+            var stale = new ArrayList<Long>();
+            long lastId = -1;
+            // Only the marker byte is needed to decide whether a value must be rewritten
+            try (var statement = connection.prepareStatement("SELECT id, substring(metadata FROM 1 FOR 1) FROM dataset_version_export "
+                + "WHERE id > ? AND metadata IS NOT NULL ORDER BY id LIMIT ?")) {
+                statement.setLong(1, afterId);
+                statement.setInt(2, batchSize);
+                try (var resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        lastId = resultSet.getLong(1);
+                        if (MetadataCodec.getCompression(resultSet.getBytes(2)).filter(compression::equals).isEmpty()) {
+                            stale.add(lastId);
+                        }
+                    }
+                }
+            }
+            if (lastId < 0) {
+                return OptionalLong.empty();
+            }
+            try (var select = connection.prepareStatement("SELECT metadata FROM dataset_version_export WHERE id = ? FOR UPDATE");
+                var update = connection.prepareStatement("UPDATE dataset_version_export SET metadata = ? WHERE id = ?")) {
+                for (var id : stale) {
+                    select.setLong(1, id);
+                    try (var resultSet = select.executeQuery()) {
+                        if (resultSet.next()) {
+                            update.setBytes(1, MetadataCodec.encode(MetadataCodec.decode(resultSet.getBytes(1)), compression));
+                            update.setLong(2, id);
+                            update.addBatch();
+                        }
+                    }
+                }
+                update.executeBatch();
+            }
+            log.debug("Rewrote metadata of {} version exports with ids in ({}, {}]", stale.size(), afterId, lastId);
+            return OptionalLong.of(lastId);
+        });
+    }
+
+    /**
+     * Returns a reference to the version export with the specified id, without loading it.
+     *
+     * @param id the id of the version export
+     * @return the reference
+     */
+    public DatasetVersionExport getReference(long id) {
+        return currentSession().load(DatasetVersionExport.class, id);
+    }
+
+    public void add(DatasetVersionExport datasetVersionExport) {
+        invalidateBagIds(datasetVersionExport.getBagId());
+        FileContents.share(currentSession(), datasetVersionExport.getFileMetas());
+        currentSession().save(datasetVersionExport);
+    }
+
+    /**
+     * Returns a page of the queue of unconfirmed version exports, ordered by (created_timestamp, id). Only the columns of {@link UnconfirmedExport}
+     * are selected, so no entities are loaded.
+     *
+     * @param limit  the maximum number of results
+     * @param offset the number of unconfirmed version exports to skip
+     * @return the page of unconfirmed version exports
+     */
+    public List<UnconfirmedExport> findUnconfirmed(int limit, int offset) {
+        CriteriaBuilder cb = currentSession().getCriteriaBuilder();
+        CriteriaQuery<UnconfirmedExport> cq = cb.createQuery(UnconfirmedExport.class);
+        Root<DatasetVersionExport> root = cq.from(DatasetVersionExport.class);
+        Join<DatasetVersionExport, Dataset> dataset = root.join("dataset");
+
         Predicate archivedTimestampIsNull = cb.isNull(root.get("archivedTimestamp"));
-        cq.where(archivedTimestampIsNull);
+        cq.select(constructUnconfirmedExport(cb, root, dataset)).where(archivedTimestampIsNull);
+        cq.orderBy(cb.asc(root.get("createdTimestamp")), cb.asc(root.get("id")));
 
         return currentSession()
             .createQuery(cq)
@@ -72,4 +447,80 @@ public class DatasetVersionExportDao extends AbstractDAO<DatasetVersionExport> {
             .setMaxResults(limit)
             .getResultList();
     }
+
+    /**
+     * Keyset-paginated variant of {@link #findUnconfirmed(int, int)}. Returns the unconfirmed version exports that come after the cursor in the order
+     * (created_timestamp, id). This order matches the partial index on unconfirmed rows, so the cost of a page does not depend on how deep it is.
+     *
+     * @param limit the maximum number of results
+     * @param after the position after which to start, or null to start at the beginning of the queue
+     * @return the next page of unconfirmed version exports
+     */
+    public List<UnconfirmedExport> findUnconfirmed(int limit, ExportCursor after) {
+        CriteriaBuilder cb = currentSession().getCriteriaBuilder();
+        CriteriaQuery<UnconfirmedExport> cq = cb.createQuery(UnconfirmedExport.class);
+        Root<DatasetVersionExport> root = cq.from(DatasetVersionExport.class);
+        Join<DatasetVersionExport, Dataset> dataset = root.join("dataset");
+        Path<OffsetDateTime> createdTimestamp = root.get("createdTimestamp");
+        Path<Long> id = root.get("id");
+
+        Predicate predicate = cb.isNull(root.get("archivedTimestamp"));
+        if (after != null) {
+            // (created_timestamp, id) > (x, y). The redundant lower bound on created_timestamp is what lets PostgreSQL start the index scan at the
+            // cursor; the OR alone is only applied as a filter, which makes a page cost proportional to its position in the queue.
+            predicate = cb.and(predicate,
+                cb.greaterThanOrEqualTo(createdTimestamp, after.getCreatedTimestamp()),
+                cb.or(
+                    cb.greaterThan(createdTimestamp, after.getCreatedTimestamp()),
+                    cb.and(cb.equal(createdTimestamp, after.getCreatedTimestamp()), cb.greaterThan(id, after.getId()))));
+        }
+        cq.select(constructUnconfirmedExport(cb, root, dataset)).where(predicate);
+        cq.orderBy(cb.asc(createdTimestamp), cb.asc(id));
+
+        return currentSession()
+            .createQuery(cq)
+            .setMaxResults(limit)
+            .getResultList();
+    }
+
+    private static CompoundSelection<UnconfirmedExport> constructUnconfirmedExport(CriteriaBuilder cb, Root<DatasetVersionExport> root,
+        Join<DatasetVersionExport, Dataset> dataset) {
+        return cb.construct(UnconfirmedExport.class,
+            root.get("id"),
+            root.get("createdTimestamp"),
+            dataset.get("nbn"),
+            dataset.get("ocflStorageRoot"),
+            root.get("ocflObjectVersionNumber"));
+    }
+
+    /**
+     * Claims a batch of unconfirmed version exports for the caller by giving them a lease that expires after the specified duration. Rows that are
+     * locked by a concurrent claim or that have an unexpired lease are skipped, so that concurrent callers get disjoint batches.
+     *
+     * @param limit         the maximum number of version exports to claim
+     * @param leaseDuration how long the claimed version exports stay reserved for the caller
+     * @return the claimed version exports
+     */
+    public List<DatasetVersionExport> claimUnconfirmed(int limit, Duration leaseDuration) {
+        var now = OffsetDateTime.now();
+        CriteriaBuilder cb = currentSession().getCriteriaBuilder();
+        CriteriaQuery<DatasetVersionExport> cq = cb.createQuery(DatasetVersionExport.class);
+        Root<DatasetVersionExport> root = cq.from(DatasetVersionExport.class);
+        Path<OffsetDateTime> leaseExpiresTimestamp = root.get("leaseExpiresTimestamp");
+
+        Predicate archivedTimestampIsNull = cb.isNull(root.get("archivedTimestamp"));
+        Predicate notLeased = cb.or(cb.isNull(leaseExpiresTimestamp), cb.lessThan(leaseExpiresTimestamp, now));
+        cq.where(archivedTimestampIsNull, notLeased);
+        cq.orderBy(cb.asc(root.get("createdTimestamp")), cb.asc(root.get("id")));
+
+        var claimed = currentSession()
+            .createQuery(cq)
+            .setMaxResults(limit)
+            .setLockOptions(new LockOptions(LockMode.UPGRADE_SKIPLOCKED))
+            .getResultList();
+        for (var dve : claimed) {
+            dve.setLeaseExpiresTimestamp(now.plus(leaseDuration));
+        }
+        return claimed;
+    }
 }
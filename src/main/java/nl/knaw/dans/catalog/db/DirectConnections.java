@@ -0,0 +1,45 @@
+/*
+ * Copyright (C) 2022 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.catalog.db;
+
+import io.dropwizard.db.DataSourceFactory;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.Properties;
+
+/**
+ * Opens connections outside the connection pool, for work that must not hold a pooled connection for long. The connections get the same URL,
+ * credentials and driver properties (such as sslmode or socketTimeout under database.properties) as the connections of the pool.
+ */
+public class DirectConnections {
+
+    private DirectConnections() {
+    }
+
+    public static Connection open(DataSourceFactory dataSourceFactory) throws SQLException {
+        var properties = new Properties();
+        properties.putAll(dataSourceFactory.getProperties());
+        if (dataSourceFactory.getUser() != null) {
+            properties.setProperty("user", dataSourceFactory.getUser());
+        }
+        if (dataSourceFactory.getPassword() != null) {
+            properties.setProperty("password", dataSourceFactory.getPassword());
+        }
+        return DriverManager.getConnection(dataSourceFactory.getUrl(), properties);
+    }
+}
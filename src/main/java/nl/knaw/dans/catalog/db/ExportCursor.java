@@ -0,0 +1,56 @@
+/*
+ * Copyright (C) 2022 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.catalog.db;
+
+import lombok.NonNull;
+import lombok.Value;
+
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Base64;
+
+/**
+ * Position in the queue of unconfirmed version exports, which is ordered by (created_timestamp, id). Clients receive it as an opaque token.
+ */
+@Value
+public class ExportCursor {
+    @NonNull
+    OffsetDateTime createdTimestamp;
+    long id;
+
+    public String encode() {
+        var plain = createdTimestamp.toInstant() + "/" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(plain.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static ExportCursor decode(String token) {
+        try {
+            var plain = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            var separator = plain.lastIndexOf('/');
+            if (separator < 0) {
+                throw new IllegalArgumentException("Invalid cursor: " + token);
+            }
+            var createdTimestamp = OffsetDateTime.ofInstant(Instant.parse(plain.substring(0, separator)), ZoneOffset.UTC);
+            return new ExportCursor(createdTimestamp, Long.parseLong(plain.substring(separator + 1)));
+        }
+        catch (DateTimeException | IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + token, e);
+        }
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2022 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.catalog.db;
+
+import nl.knaw.dans.catalog.core.FileContent;
+import nl.knaw.dans.catalog.core.FileMeta;
+import org.hibernate.FlushMode;
+import org.hibernate.LockMode;
+import org.hibernate.LockOptions;
+import org.hibernate.Session;
+
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaDelete;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Root;
+import javax.persistence.criteria.Subquery;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Lets file metas share their file contents. The DAOs call {@link #share(Session, Collection)} before new or changed file metas are written, so that
+ * they refer to the existing file content with the same values, if there is one. A file meta whose content was not shared this way still gets its
+ * own copy of the content, because file contents are persisted by cascade; sharing only saves space.
+ * <p>
+ * Sharing makes the file metas narrower, not fewer: every version export still has one file meta per file, so the number of rows written for a new
+ * version is proportional to its number of files, not to the number of files that changed.
+ */
+class FileContents {
+    // Keeps the IN lists well below the limit on the number of bind parameters
+    private static final int MAX_KEYS_PER_QUERY = 1000;
+
+    private FileContents() {
+    }
+
+    static void share(Session session, Collection<FileMeta> fileMetas) {
+        var unshared = new HashMap<ByteBuffer, List<FileMeta>>();
+        for (var fileMeta : fileMetas) {
+            var content = fileMeta.getContent();
+            if (content != null && content.getId() == null) {
+                unshared.computeIfAbsent(ByteBuffer.wrap(content.getContentKey()), k -> new ArrayList<>()).add(fileMeta);
+            }
+        }
+        var keys = new ArrayList<>(unshared.keySet());
+        for (int from = 0; from < keys.size(); from += MAX_KEYS_PER_QUERY) {
+            var chunk = keys.subList(from, Math.min(from + MAX_KEYS_PER_QUERY, keys.size())).stream()
+                .map(ByteBuffer::array)
+                .collect(Collectors.toList());
+            for (var content : findByContentKeys(session, chunk)) {
+                var sharing = unshared.remove(ByteBuffer.wrap(content.getContentKey()));
+                if (sharing != null) {
+                    sharing.forEach(fileMeta -> fileMeta.setContent(content));
+                }
+            }
+        }
+        // New contents are persisted once, even if several of the file metas have them
+        for (var sharing : unshared.values()) {
+            var content = sharing.get(0).getContent();
+            sharing.forEach(fileMeta -> fileMeta.setContent(content));
+        }
+    }
+
+    private static List<FileContent> findByContentKeys(Session session, List<byte[]> contentKeys) {
+        CriteriaBuilder cb = session.getCriteriaBuilder();
+        CriteriaQuery<FileContent> cq = cb.createQuery(FileContent.class);
+        Root<FileContent> root = cq.from(FileContent.class);
+        cq.select(root).where(root.get("contentKey").in(contentKeys));
+        return session.createQuery(cq)
+            // Flushing now would insert the unshared contents that are already attached to managed file metas
+            .setHibernateFlushMode(FlushMode.COMMIT)
+            // Keeps deleteUnused in another transaction from deleting the contents before the file metas that share them are committed
+            .setLockOptions(new LockOptions(LockMode.PESSIMISTIC_READ))
+            .list();
+    }
+
+    /**
+     * Deletes those of the specified file contents that are no longer used by any file meta.
+     * <p>
+     * A file content may be shared by a concurrent transaction at the same time. {@link #share(Session, Collection)} locks the contents it finds
+     * (FOR SHARE), so the contents are first locked for update, skipping the ones that are being shared; those are left for a later call. Once a
+     * content is locked here, a concurrent share waits for this transaction and then no longer finds the content, so it creates a new one. The delete
+     * itself checks for users again, so that it sees the file metas committed by shares that finished before the lock was taken.
+     *
+     * @param session    the session
+     * @param contentIds the ids of the file contents that may have become unused
+     * @return the number of deleted file contents
+     */
+    static int deleteUnused(Session session, Collection<Long> contentIds) {
+        var ids = new ArrayList<>(contentIds);
+        int deleted = 0;
+        for (int from = 0; from < ids.size(); from += MAX_KEYS_PER_QUERY) {
+            var locked = lockForDelete(session, ids.subList(from, Math.min(from + MAX_KEYS_PER_QUERY, ids.size())));
+            if (locked.isEmpty()) {
+                continue;
+            }
+            CriteriaBuilder cb = session.getCriteriaBuilder();
+            CriteriaDelete<FileContent> cd = cb.createCriteriaDelete(FileContent.class);
+            Root<FileContent> root = cd.from(FileContent.class);
+            Subquery<Long> users = cd.subquery(Long.class);
+            Root<FileMeta> fileMeta = users.from(FileMeta.class);
+            users.select(fileMeta.get("id")).where(cb.equal(fileMeta.get("content"), root));
+            cd.where(root.get("id").in(locked), cb.not(cb.exists(users)));
+            deleted += session.createQuery(cd).executeUpdate();
+        }
+        return deleted;
+    }
+
+    private static List<Long> lockForDelete(Session session, List<Long> ids) {
+        CriteriaBuilder cb = session.getCriteriaBuilder();
+        CriteriaQuery<FileContent> cq = cb.createQuery(FileContent.class);
+        Root<FileContent> root = cq.from(FileContent.class);
+        cq.select(root).where(root.get("id").in(ids));
+        return session.createQuery(cq)
+            .setHibernateFlushMode(FlushMode.COMMIT)
+            .setLockOptions(new LockOptions(LockMode.UPGRADE_SKIPLOCKED))
+            .list().stream()
+            .map(FileContent::getId)
+            .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,226 @@
+/*
+ * Copyright (C) 2022 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.catalog.db;
+
+import io.dropwizard.hibernate.AbstractDAO;
+import lombok.extern.slf4j.Slf4j;
+import nl.knaw.dans.catalog.core.DatasetVersionExport;
+import nl.knaw.dans.catalog.core.FileContent;
+import nl.knaw.dans.catalog.core.FileMeta;
+import org.hibernate.LockMode;
+import org.hibernate.SessionFactory;
+import org.hibernate.exception.ConstraintViolationException;
+
+import javax.persistence.PersistenceException;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Join;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+
+@Slf4j
+public class FileMetaDao extends AbstractDAO<FileMeta> {
+    private static final Comparator<FileMeta> BY_FILEPATH = Comparator.comparing(FileMeta::getFilepath);
+
+    public FileMetaDao(SessionFactory sessionFactory) {
+        super(sessionFactory);
+    }
+
+    /**
+     * Adds a file meta to its version export, without loading the other file metas of the version export.
+     *
+     * @param fileMeta the file meta; its version export must be set
+     */
+    public void add(FileMeta fileMeta) {
+        FileContents.share(currentSession(), List.of(fileMeta));
+        currentSession().persist(fileMeta);
+    }
+
+    /**
+     * Adds file metas to their version exports and writes them to the database immediately, so that conflicts are reported by this call.
+     *
+     * @param fileMetas the file metas; their version exports must be set
+     * @throws IllegalArgumentException if a file meta conflicts with an existing one
+     */
+    public void addAll(List<FileMeta> fileMetas) {
+        try {
+            FileContents.share(currentSession(), fileMetas);
+            for (var fileMeta : fileMetas) {
+                currentSession().persist(fileMeta);
+            }
+            currentSession().flush();
+        }
+        catch (PersistenceException e) {
+            throw conflict(e);
+        }
+    }
+
+    /**
+     * Translates a failed flush: a constraint violation means that the file metas conflict with existing ones, which is reported as an
+     * {@link IllegalArgumentException}. The session wraps it in a {@link PersistenceException}; other failures are returned as they are.
+     */
+    private static RuntimeException conflict(PersistenceException e) {
+        var cause = e instanceof ConstraintViolationException ? e : e.getCause();
+        if (cause instanceof ConstraintViolationException) {
+            return new IllegalArgumentException(((ConstraintViolationException) cause).getSQLException().getMessage(), e);
+        }
+        return e;
+    }
+
+    /**
+     * Replaces the file metas of a version export with the specified ones, writing only the differences. The old and new file metas are matched on
+     * their filepath with a sorted merge: file metas that are no longer present are deleted, changed ones are updated in place and new ones are
+     * inserted. The deletes are flushed first, so that a file URI may move to another filepath. File contents that are no longer used afterwards are
+     * deleted. If anything changed, the row version of the version export is incremented.
+     *
+     * @param datasetVersionExport the version export
+     * @param fileMetas            the new file metas
+     * @throws IllegalArgumentException if a filepath occurs more than once, or the new file metas conflict otherwise
+     */
+    public void replaceAll(DatasetVersionExport datasetVersionExport, List<FileMeta> fileMetas) {
+        var current = new ArrayList<>(datasetVersionExport.getFileMetas());
+        current.sort(BY_FILEPATH);
+        var wanted = new ArrayList<>(fileMetas);
+        wanted.sort(BY_FILEPATH);
+        for (int i = 1; i < wanted.size(); i++) {
+            if (wanted.get(i).getFilepath().equals(wanted.get(i - 1).getFilepath())) {
+                throw new IllegalArgumentException("Duplicate filepath: " + wanted.get(i).getFilepath());
+            }
+        }
+
+        var deleted = new HashSet<FileMeta>();
+        var inserted = new ArrayList<FileMeta>();
+        var updated = new ArrayList<FileMeta>();
+        var released = new HashSet<Long>();
+        int i = 0;
+        int j = 0;
+        while (i < current.size() || j < wanted.size()) {
+            int comparison = i == current.size() ? 1
+                : j == wanted.size() ? -1
+                : BY_FILEPATH.compare(current.get(i), wanted.get(j));
+            if (comparison < 0) {
+                released.add(current.get(i).getContent().getId());
+                deleted.add(current.get(i++));
+            }
+            else if (comparison > 0) {
+                inserted.add(wanted.get(j++));
+            }
+            else {
+                var content = current.get(i).getContent();
+                if (copyContent(wanted.get(j++), current.get(i))) {
+                    released.add(content.getId());
+                    updated.add(current.get(i));
+                }
+                i++;
+            }
+        }
+
+        var written = new ArrayList<>(updated);
+        written.addAll(inserted);
+        FileContents.share(currentSession(), written);
+        try {
+            if (!deleted.isEmpty()) {
+                // Removed by orphan removal
+                datasetVersionExport.getFileMetas().removeAll(deleted);
+                currentSession().flush();
+            }
+            for (var fileMeta : inserted) {
+                datasetVersionExport.addFileMeta(fileMeta);
+            }
+            currentSession().flush();
+        }
+        catch (PersistenceException e) {
+            throw conflict(e);
+        }
+        if (!deleted.isEmpty() || !updated.isEmpty() || !inserted.isEmpty()) {
+            // Changes to the file metas alone do not make the version export dirty
+            currentSession().lock(datasetVersionExport, LockMode.OPTIMISTIC_FORCE_INCREMENT);
+        }
+        int unused = FileContents.deleteUnused(currentSession(), released);
+        log.debug("Merged file metas of version export {}: {} deleted, {} updated, {} inserted, {} unused file contents deleted",
+            datasetVersionExport.getId(), deleted.size(), updated.size(), inserted.size(), unused);
+    }
+
+    private boolean copyContent(FileMeta source, FileMeta target) {
+        if (Objects.equals(source.getFileUri(), target.getFileUri())
+            && Objects.equals(source.getByteSize(), target.getByteSize())
+            && Objects.equals(source.getSha1sum(), target.getSha1sum())) {
+            return false;
+        }
+        target.setContent(source.getContent());
+        return true;
+    }
+
+    /**
+     * Returns a page of the file metas of a version export, in filepath order. The pages are read with keyset pagination on the (version_export_id,
+     * filepath) index: the next page starts after the last filepath of the previous one.
+     *
+     * @param versionExportId the id of the version export
+     * @param after           only return file metas with a filepath after this one; null to start at the beginning
+     * @param prefix          only return file metas with a filepath that starts with this prefix; null for all
+     * @param minSize         only return file metas of at least this many bytes; null for no minimum
+     * @param maxSize         only return file metas of at most this many bytes; null for no maximum
+     * @param limit           the maximum number of file metas to return
+     * @return the file metas
+     */
+    public List<FileMeta> findPage(long versionExportId, String after, String prefix, Long minSize, Long maxSize, int limit) {
+        CriteriaBuilder cb = currentSession().getCriteriaBuilder();
+        CriteriaQuery<FileMeta> cq = cb.createQuery(FileMeta.class);
+        Root<FileMeta> root = cq.from(FileMeta.class);
+        @SuppressWarnings("unchecked")
+        Join<FileMeta, FileContent> content = (Join<FileMeta, FileContent>) root.<FileMeta, FileContent> fetch("content");
+        Path<String> filepath = root.get("filepath");
+
+        var predicates = new ArrayList<Predicate>();
+        predicates.add(cb.equal(root.get("versionExport").get("id"), versionExportId));
+        if (after != null) {
+            predicates.add(cb.greaterThan(filepath, after));
+        }
+        if (prefix != null && !prefix.isEmpty()) {
+            // The lower bound lets the index scan start at the prefix, whatever the collation
+            predicates.add(cb.greaterThanOrEqualTo(filepath, prefix));
+            predicates.add(cb.like(filepath, escapeLike(prefix) + "%", '\\'));
+        }
+        if (minSize != null) {
+            predicates.add(cb.greaterThanOrEqualTo(content.get("byteSize"), minSize));
+        }
+        if (maxSize != null) {
+            predicates.add(cb.lessThanOrEqualTo(content.get("byteSize"), maxSize));
+        }
+        cq.select(root).where(predicates.toArray(new Predicate[0])).orderBy(cb.asc(filepath));
+        return currentSession().createQuery(cq).setMaxResults(limit).list();
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    /**
+     * Writes the pending changes to the database and detaches all entities from the session. Used to keep the session small while large numbers of
+     * file metas are added in one transaction. Entities obtained before this call must not be used after it.
+     */
+    public void flushAndClear() {
+        currentSession().flush();
+        currentSession().clear();
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright (C) 2022 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.catalog.db;
+
+import lombok.NonNull;
+import lombok.Value;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Position in the file metas of a version export, which are ordered by filepath. Clients receive it as an opaque token, so that filepaths with
+ * characters that have a meaning in a URI (or a URI template) can be passed back unchanged.
+ */
+@Value
+public class FilepathCursor {
+    @NonNull
+    String filepath;
+
+    public String encode() {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(filepath.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static FilepathCursor decode(String token) {
+        try {
+            return new FilepathCursor(new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8));
+        }
+        catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + token, e);
+        }
+    }
+}
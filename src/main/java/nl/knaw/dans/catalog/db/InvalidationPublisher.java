@@ -0,0 +1,36 @@
+/*
+ * Copyright (C) 2022 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.catalog.db;
+
+import org.hibernate.Session;
+
+/**
+ * Tells other nodes of the service that an entry of a {@link LookupCache} must be invalidated.
+ */
+@FunctionalInterface
+public interface InvalidationPublisher {
+    InvalidationPublisher NONE = (session, cacheName, key) -> {
+    };
+
+    /**
+     * Publishes the invalidation as part of the current transaction of the session; it must only reach the other nodes if the transaction commits.
+     *
+     * @param session   the current session
+     * @param cacheName the name of the cache
+     * @param key       the key to invalidate
+     */
+    void publish(Session session, String cacheName, String key);
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright (C) 2022 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.catalog.db;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.Getter;
+import nl.knaw.dans.catalog.config.LookupCacheConfig;
+import org.hibernate.Session;
+
+import javax.transaction.Synchronization;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Caches the results of lookups by an identifier (such as an NBN): the id of the entity that has the identifier, or the fact that no entity has it.
+ * Entities themselves are not cached, because they belong to a session. A cached id is resolved to the entity by primary key, which is answered from
+ * the persistence context if the entity is already in it.
+ * <p>
+ * Queries run outside the cache, so that a slow query does not block lookups of other identifiers. To keep a lookup that raced with a change from
+ * storing a stale result, every invalidation increments a generation counter; a result is only kept if no invalidation happened while it was being
+ * looked up.
+ */
+public class LookupCache {
+    @Getter
+    private final String name;
+    // The id of the entity, or empty if no entity has the identifier
+    private final Cache<String, Optional<Long>> cache;
+    private final AtomicLong generation = new AtomicLong();
+    private final InvalidationPublisher invalidationPublisher;
+
+    public LookupCache(String name, LookupCacheConfig config) {
+        this(name, config, InvalidationPublisher.NONE);
+    }
+
+    public LookupCache(String name, LookupCacheConfig config, InvalidationPublisher invalidationPublisher) {
+        this.name = name;
+        this.invalidationPublisher = invalidationPublisher;
+        this.cache = Caffeine.newBuilder()
+            .maximumSize(config.getMaximumSize())
+            .expireAfterWrite(config.getExpireAfterWrite().toJavaDuration())
+            // Do maintenance (such as evicting entries when the maximum size is 0) in the calling thread
+            .executor(Runnable::run)
+            .recordStats()
+            .build();
+    }
+
+    public static LookupCache disabled(String name) {
+        var config = new LookupCacheConfig();
+        config.setMaximumSize(0);
+        return new LookupCache(name, config);
+    }
+
+    /**
+     * Finds the entity with the specified identifier. If the identifier is cached, the query is skipped: the entity is loaded by its cached id, or
+     * empty is returned if the identifier is cached as not found.
+     *
+     * @param key   the identifier
+     * @param query finds the entity by its identifier in the database
+     * @param idOf  returns the id of an entity
+     * @param load  loads an entity by its id; returns null if there is none
+     * @param <E>   the type of the entity
+     * @return the entity, or empty if no entity has the identifier
+     */
+    public <E> Optional<E> find(String key, Function<String, Optional<E>> query, Function<E, Long> idOf, Function<Long, E> load) {
+        var cached = cache.getIfPresent(key);
+        if (cached != null) {
+            if (cached.isEmpty()) {
+                return Optional.empty();
+            }
+            var entity = load.apply(cached.get());
+            if (entity != null) {
+                return Optional.of(entity);
+            }
+            // Deleted since it was cached
+            cache.asMap().remove(key, cached);
+        }
+        var start = generation.get();
+        var result = query.apply(key);
+        var entry = result.map(idOf);
+        cache.put(key, entry);
+        if (generation.get() != start) {
+            // An invalidation happened while the query ran, so the result may already be stale. An invalidation that happens after this check
+            // removes the entry itself, because it increments the generation before it invalidates.
+            cache.asMap().remove(key, entry);
+        }
+        return result;
+    }
+
+    /**
+     * Invalidates the entry for the identifier, both now and when the current transaction completes. The latter prevents a concurrent request from
+     * caching a state that is about to be changed by the transaction. The invalidation is also published to the other nodes of the service.
+     *
+     * @param session the current session
+     * @param key     the identifier
+     */
+    public void invalidate(Session session, String key) {
+        if (key == null) {
+            return;
+        }
+        evict(key);
+        invalidationPublisher.publish(session, name, key);
+        var transaction = session.getTransaction();
+        if (transaction.isActive()) {
+            transaction.registerSynchronization(new Synchronization() {
+
+                @Override
+                public void beforeCompletion() {
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    evict(key);
+                }
+            });
+        }
+    }
+
+    /**
+     * Evicts the entry for the identifier from this cache only.
+     *
+     * @param key the identifier
+     */
+    public void evict(String key) {
+        generation.incrementAndGet();
+        cache.invalidate(key);
+    }
+
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        cache.invalidateAll();
+    }
+
+    public void registerMetrics(MetricRegistry metrics) {
+        metrics.register(MetricRegistry.name(LookupCache.class, name, "hits"), (Gauge<Long>) () -> cache.stats().hitCount());
+        metrics.register(MetricRegistry.name(LookupCache.class, name, "misses"), (Gauge<Long>) () -> cache.stats().missCount());
+        metrics.register(MetricRegistry.name(LookupCache.class, name, "hit-rate"), (Gauge<Double>) () -> cache.stats().hitRate());
+        metrics.register(MetricRegistry.name(LookupCache.class, name, "evictions"), (Gauge<Long>) () -> cache.stats().evictionCount());
+        metrics.register(MetricRegistry.name(LookupCache.class, name, "size"), (Gauge<Long>) cache::estimatedSize);
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2022 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.catalog.db;
+
+import io.dropwizard.lifecycle.Managed;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import nl.knaw.dans.catalog.core.MetadataCompression;
+
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Background task that rewrites the stored metadata of all version exports with the configured compression, one batch at a time. It walks the table
+ * once, in id order, and stops when it reaches the end.
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class MetadataRecompressionTask implements Managed {
+    @NonNull
+    private final SessionRunner sessionRunner;
+
+    @NonNull
+    private final DatasetVersionExportDao dao;
+
+    @NonNull
+    private final MetadataCompression compression;
+
+    private final int batchSize;
+
+    @NonNull
+    private final Duration interval;
+
+    private ScheduledExecutorService executor;
+
+    private long lastId = 0;
+
+    @Override
+    public void start() {
+        executor = Executors.newSingleThreadScheduledExecutor(r -> new Thread(r, "metadata-recompression"));
+        executor.scheduleWithFixedDelay(this::recompressNextBatch, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void stop() throws Exception {
+        executor.shutdownNow();
+        executor.awaitTermination(1, TimeUnit.MINUTES);
+    }
+
+    private void recompressNextBatch() {
+        try {
+            var next = sessionRunner.inTransaction(false, session -> dao.recompressMetadata(lastId, batchSize, compression));
+            if (next.isEmpty()) {
+                log.info("All version export metadata is stored with compression {}", compression);
+                executor.shutdown();
+            }
+            else {
+                lastId = next.getAsLong();
+            }
+        }
+        catch (Exception e) {
+            // Retried in the next run
+            log.error("Could not recompress metadata of version exports after id {}", lastId, e);
+        }
+    }
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright (C) 2022 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.catalog.db;
+
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.Session;
+
+/**
+ * Publishes invalidations with PostgreSQL's NOTIFY. Notifications are only delivered when the transaction that sent them commits.
+ */
+@RequiredArgsConstructor
+public class PostgresInvalidationPublisher implements InvalidationPublisher {
+    @NonNull
+    private final String channel;
+
+    @Override
+    public void publish(Session session, String cacheName, String key) {
+        session.doWork(connection -> {
+            try (var statement = connection.prepareStatement("SELECT pg_notify(?, ?)")) {
+                statement.setString(1, channel);
+                statement.setString(2, cacheName + " " + key);
+                statement.execute();
+            }
+        });
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright (C) 2022 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.catalog.db;
+
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.FlushMode;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.context.internal.ManagedSessionContext;
+
+import java.io.IOException;
+
+/**
+ * Runs work in its own session and transaction, outside the scope of a {@link io.dropwizard.hibernate.UnitOfWork}. This is needed for work that is
+ * done while the response is being written, such as streaming. The session is bound to the current thread, so that the DAOs can be used as usual.
+ */
+@RequiredArgsConstructor
+public class SessionRunner {
+    @NonNull
+    private final SessionFactory sessionFactory;
+
+    @FunctionalInterface
+    public interface Work<T> {
+        T run(Session session) throws IOException;
+    }
+
+    public <T> T inTransaction(boolean readOnly, Work<T> work) throws IOException {
+        try (var session = sessionFactory.openSession()) {
+            if (readOnly) {
+                session.setDefaultReadOnly(true);
+                session.setHibernateFlushMode(FlushMode.MANUAL);
+            }
+            ManagedSessionContext.bind(session);
+            var transaction = session.beginTransaction();
+            try {
+                var result = work.run(session);
+                transaction.commit();
+                return result;
+            }
+            catch (IOException | RuntimeException e) {
+                if (transaction.isActive()) {
+                    transaction.rollback();
+                }
+                throw e;
+            }
+            finally {
+                ManagedSessionContext.unbind(sessionFactory);
+            }
+        }
+    }
+}
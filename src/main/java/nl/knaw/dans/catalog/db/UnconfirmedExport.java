@@ -0,0 +1,37 @@
+/*
+ * Copyright (C) 2022 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.catalog.db;
+
+import lombok.Value;
+
+import java.time.OffsetDateTime;
+
+/**
+ * Entry in the queue of unconfirmed version exports. This is a projection of a version export and its dataset, holding only the columns that are
+ * listed and the ones needed for the {@link ExportCursor} that points after it.
+ */
+@Value
+public class UnconfirmedExport {
+    Long id;
+    OffsetDateTime createdTimestamp;
+    String nbn;
+    String ocflStorageRoot;
+    Integer ocflObjectVersionNumber;
+
+    public ExportCursor toCursor() {
+        return new ExportCursor(createdTimestamp, id);
+    }
+}
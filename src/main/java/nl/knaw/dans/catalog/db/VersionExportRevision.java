@@ -0,0 +1,46 @@
+/*
+ * Copyright (C) 2022 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.catalog.db;
+
+import lombok.Value;
+import nl.knaw.dans.catalog.core.DatasetVersionExport;
+
+import java.time.OffsetDateTime;
+
+/**
+ * The state of a version export that determines whether a client's copy of it is still current, without the version export itself.
+ */
+@Value
+public class VersionExportRevision {
+    Long id;
+    Long rowVersion;
+    OffsetDateTime archivedTimestamp;
+    Boolean skeletonRecord;
+
+    public static VersionExportRevision of(DatasetVersionExport datasetVersionExport) {
+        return new VersionExportRevision(datasetVersionExport.getId(), datasetVersionExport.getRowVersion(), datasetVersionExport.getArchivedTimestamp(),
+            datasetVersionExport.getSkeletonRecord());
+    }
+
+    /**
+     * An archived version export that is not a skeleton record can no longer be changed.
+     *
+     * @return whether the version export is immutable
+     */
+    public boolean isImmutable() {
+        return archivedTimestamp != null && !Boolean.TRUE.equals(skeletonRecord);
+    }
+}
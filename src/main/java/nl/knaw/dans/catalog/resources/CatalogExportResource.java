@@ -0,0 +1,67 @@
+/*
+ * Copyright (C) 2022 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.catalog.resources;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import nl.knaw.dans.catalog.Conversions;
+import nl.knaw.dans.catalog.db.DatasetDao;
+import nl.knaw.dans.catalog.db.SessionRunner;
+import org.mapstruct.factory.Mappers;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+
+/**
+ * Exports the whole catalog as newline-delimited JSON, one dataset (with its version exports) per line. The datasets are read with a database
+ * cursor and written as they are read, so the export runs in constant memory, regardless of the size of the catalog.
+ */
+@Path("/export")
+@RequiredArgsConstructor
+@Slf4j
+public class CatalogExportResource {
+    private static final Conversions conversions = Mappers.getMapper(Conversions.class);
+    private static final int FETCH_SIZE = 500;
+
+    @NonNull
+    private final DatasetDao datasetDao;
+
+    @NonNull
+    private final SessionRunner sessionRunner;
+
+    @NonNull
+    private final ObjectMapper objectMapper;
+
+    @GET
+    @Produces(NdjsonWriter.APPLICATION_NDJSON)
+    public Response export() {
+        StreamingOutput output = outputStream -> {
+            try (var writer = new NdjsonWriter(objectMapper, outputStream)) {
+                var count = sessionRunner.inTransaction(true, session -> datasetDao.visitAll(FETCH_SIZE, dataset -> {
+                    datasetDao.fetchVersionExports(dataset, true, true);
+                    writer.write(conversions.convert(dataset));
+                }));
+                log.info("Exported {} datasets", count);
+            }
+        };
+        return Response.ok(output).build();
+    }
+}
@@ -15,6 +15,7 @@
  */
 package nl.knaw.dans.catalog.resources;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.dropwizard.hibernate.UnitOfWork;
 import io.dropwizard.views.common.View;
 import lombok.NonNull;
@@ -26,21 +27,28 @@ import nl.knaw.dans.catalog.api.VersionExportDto;
 import nl.knaw.dans.catalog.core.Dataset;
 import nl.knaw.dans.catalog.core.DatasetVersionExport;
 import nl.knaw.dans.catalog.db.DatasetDao;
+import nl.knaw.dans.catalog.db.DatasetVersionExportDao;
+import nl.knaw.dans.catalog.db.FileMetaDao;
+import nl.knaw.dans.catalog.db.VersionExportRevision;
 import org.apache.hc.core5.http.HeaderElement;
 import org.apache.hc.core5.http.message.BasicHeaderValueParser;
 import org.apache.hc.core5.http.message.ParserCursor;
+import org.hibernate.FlushMode;
 import org.mapstruct.factory.Mappers;
 
 import javax.validation.Valid;
 import javax.validation.constraints.NotNull;
 import javax.ws.rs.NotFoundException;
 import javax.ws.rs.PathParam;
+import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.Status;
+import javax.ws.rs.core.UriInfo;
 import java.time.OffsetDateTime;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Comparator;
 import java.util.Optional;
 
 @RequiredArgsConstructor
@@ -51,6 +59,21 @@ public class DatasetApiResource implements DatasetApi {
     @NonNull
     private final DatasetDao datasetDao;
 
+    @NonNull
+    private final DatasetVersionExportDao datasetVersionExportDao;
+
+    @NonNull
+    private final FileMetaDao fileMetaDao;
+
+    @NonNull
+    private final ObjectMapper objectMapper;
+
+    @Context
+    private UriInfo uriInfo;
+
+    @Context
+    private Request request;
+
     @Override
     @UnitOfWork
     public Response addDataset(String nbn, DatasetDto datasetDto) {
@@ -61,30 +84,30 @@ public class DatasetApiResource implements DatasetApi {
         if (dataset.isPresent()) {
             return Response.status(Response.Status.CONFLICT).entity("Dataset already exists").build();
         }
-        datasetDao.save(conversions.convert(datasetDto));
+        var newDataset = conversions.convert(datasetDto);
+        for (var versionExport : newDataset.getDatasetVersionExports()) {
+            datasetVersionExportDao.invalidateBagIds(versionExport.getBagId());
+        }
+        datasetDao.save(newDataset);
         return Response.ok().build();
     }
 
     @Override
     @UnitOfWork
     public Response updateVersionExport(String nbn, Integer ocflObjectVersion, VersionExportDto versionExportDto) {
-        var datasetOptional = datasetDao.findByNbn(nbn);
-        if (datasetOptional.isEmpty()) {
-            return Response.status(Response.Status.NOT_FOUND).entity("Dataset not found").build();
-        }
-        var dataset = datasetOptional.get();
-        var datasetVersionExportOptional = dataset.getDatasetVersionExports().stream()
-            .filter(dve -> dve.getOcflObjectVersionNumber().equals(versionExportDto.getOcflObjectVersionNumber()))
-            .findFirst();
+        var datasetVersionExportOptional = datasetVersionExportDao.findByNbnAndVersion(nbn, versionExportDto.getOcflObjectVersionNumber());
         if (datasetVersionExportOptional.isEmpty()) {
-            return Response.status(Response.Status.NOT_FOUND).entity("DatasetVersionExport not found").build();
+            return versionExportNotFound(nbn);
         }
         var datasetVersionExport = datasetVersionExportOptional.get();
         if (!datasetVersionExport.getSkeletonRecord()) {
             return Response.status(Response.Status.CONFLICT).entity("Not a skeleton record. Cannot update").build();
         }
-        conversions.updateVersionExportFromDto(versionExportDto, datasetVersionExport);
-        datasetDao.save(dataset);
+        var oldBagId = datasetVersionExport.getBagId();
+        conversions.updateVersionExportPropertiesFromDto(versionExportDto, datasetVersionExport);
+        datasetVersionExportDao.invalidateBagIds(oldBagId, datasetVersionExport.getBagId());
+        // Only write the file metas that actually changed. Missing fileMetas means no files, as when the version export is added
+        fileMetaDao.replaceAll(datasetVersionExport, conversions.mapFileMetaDtoListToFileMetaList(versionExportDto.getFileMetas()));
         return Response.ok().build();
     }
 
@@ -95,45 +118,31 @@ public class DatasetApiResource implements DatasetApi {
         if (datasetOptional.isEmpty()) {
             return Response.status(Response.Status.NOT_FOUND).entity("Dataset not found").build();
         }
-        var dataset = datasetOptional.get();
-        var latestDatasetVersionExportOptional = dataset.getDatasetVersionExports().stream()
-            .max(Comparator.comparing(DatasetVersionExport::getOcflObjectVersionNumber));
-
-        if (latestDatasetVersionExportOptional.isPresent() && latestDatasetVersionExportOptional.get().getOcflObjectVersionNumber() + 1 != versionExportDto.getOcflObjectVersionNumber()) {
+        var latestVersionNumber = datasetVersionExportDao.findMaxVersionNumber(nbn);
+        if (latestVersionNumber.isPresent() && latestVersionNumber.get() + 1 != versionExportDto.getOcflObjectVersionNumber()) {
             return Response.status(Status.CONFLICT).entity("ocflVersionNumber must be one higher than latest existing version's").build();
         }
         var versionExport = conversions.convert(versionExportDto);
-        versionExport.setDataset(dataset);
-        dataset.getDatasetVersionExports().add(versionExport);
-        datasetDao.save(dataset);
+        versionExport.setDataset(datasetOptional.get());
+        datasetVersionExportDao.add(versionExport);
         return Response.ok().build();
     }
 
     @Override
     @UnitOfWork
     public Response setVersionExportArchivedTimestamp(String nbn, Integer ocflObjectVersionNumber, OffsetDateTime archivedTimestamp) {
-        var datasetOptional = datasetDao.findByNbn(nbn);
-        if (datasetOptional.isEmpty()) {
-            return Response.status(Response.Status.NOT_FOUND).entity("Dataset not found").build();
+        if (datasetVersionExportDao.setArchivedTimestamp(nbn, ocflObjectVersionNumber, archivedTimestamp)) {
+            return Response.ok().build();
         }
-        var dataset = datasetOptional.get();
-        var datasetVersionExportOptional = dataset.getDatasetVersionExports().stream()
-            .filter(dve -> dve.getOcflObjectVersionNumber().equals(ocflObjectVersionNumber))
-            .findFirst();
-        if (datasetVersionExportOptional.isEmpty()) {
-            return Response.status(Response.Status.NOT_FOUND).entity("DatasetVersionExport not found").build();
+        // Nothing was updated; find out why
+        if (datasetVersionExportDao.findByNbnAndVersion(nbn, ocflObjectVersionNumber).isEmpty()) {
+            return versionExportNotFound(nbn);
         }
-        var datasetVersionExport = datasetVersionExportOptional.get();
-        if (datasetVersionExport.getArchivedTimestamp() != null) {
-            return Response.status(Response.Status.CONFLICT).entity("Archived timestamp is already set").build();
-        }
-        datasetVersionExport.setArchivedTimestamp(archivedTimestamp);
-        datasetDao.save(dataset);
-        return Response.ok().build();
+        return Response.status(Response.Status.CONFLICT).entity("Archived timestamp is already set").build();
     }
 
     @Override
-    @UnitOfWork
+    @UnitOfWork(readOnly = true, flushMode = FlushMode.MANUAL)
     public Response getDataset(String nbn, String accept) {
         var parser = new BasicHeaderValueParser();
         var acceptedMediaTypes = Arrays.stream(parser.parseElements(accept, new ParserCursor(0, accept.length())))
@@ -151,29 +160,100 @@ public class DatasetApiResource implements DatasetApi {
         }
         Dataset dataset = datasetOptional.get();
         if (acceptedMediaTypes.anyMatch(MediaType.TEXT_HTML_TYPE::isCompatible)) {
+            datasetDao.fetchVersionExports(dataset, false, true);
             View view = new DatasetView(dataset);
             return Response.ok(view).build();
         }
         else {
-            return Response.ok(conversions.convert(dataset)).build();
+            return Response.ok(convert(dataset)).build();
         }
     }
 
     @Override
-    @UnitOfWork
+    @UnitOfWork(readOnly = true, flushMode = FlushMode.MANUAL)
     public Response getDatasetBySwordToken(String swordToken) {
         var dataset = datasetDao.findBySwordToken(swordToken).orElseThrow(() -> new NotFoundException("Dataset not found"));
-        return Response.ok(conversions.convert(dataset)).build();
+        return Response.ok(convert(dataset)).build();
     }
 
     @Override
-    @UnitOfWork
+    @UnitOfWork(readOnly = true, flushMode = FlushMode.MANUAL)
     public Response getVersionExport(String nbn, Integer ocflObjectVersionNumber) {
-        var dataset = datasetDao.findByNbn(nbn).orElseThrow(() -> new NotFoundException("Dataset not found"));
-        var datasetVersionExport = dataset.getDatasetVersionExports().stream()
-            .filter(dve -> dve.getOcflObjectVersionNumber().equals(ocflObjectVersionNumber))
-            .findFirst()
+        var revision = datasetVersionExportDao.findRevisionByNbnAndVersion(nbn, ocflObjectVersionNumber);
+        if (revision.isEmpty()) {
+            datasetDao.findByNbn(nbn).orElseThrow(() -> new NotFoundException("Dataset not found"));
+            throw new NotFoundException("DatasetVersionExport not found");
+        }
+        var preconditionResponse = VersionExportValidators.evaluatePreconditions(request, revision.get());
+        if (preconditionResponse.isPresent()) {
+            return preconditionResponse.get();
+        }
+        var datasetVersionExport = datasetVersionExportDao.findByNbnAndVersion(nbn, ocflObjectVersionNumber)
             .orElseThrow(() -> new NotFoundException("DatasetVersionExport not found"));
-        return Response.ok(conversions.convert(datasetVersionExport)).build();
+        // The ETag must match the version export that is returned, which may have changed since the revision was read
+        return VersionExportValidators.addValidators(Response.ok(convert(datasetVersionExport)), VersionExportRevision.of(datasetVersionExport))
+            .build();
+    }
+
+    private Object convert(Dataset dataset) {
+        var selection = getFieldSelection("versionExports.fileMetas");
+        if (selection.includes("versionExports")) {
+            datasetDao.fetchVersionExports(dataset, selection.includes("versionExports.metadata"), selection.includes("versionExports.fileMetas"));
+        }
+        if (selection.isAll()) {
+            return conversions.convert(dataset);
+        }
+        var datasetDto = conversions.convertHeader(dataset);
+        if (selection.includes("versionExports")) {
+            var versionExportDtos = new ArrayList<VersionExportDto>();
+            for (var datasetVersionExport : dataset.getDatasetVersionExports()) {
+                versionExportDtos.add(convertVersionExport(datasetVersionExport, selection, "versionExports."));
+            }
+            datasetDto.setVersionExports(versionExportDtos);
+        }
+        return selection.prune(objectMapper.valueToTree(datasetDto));
+    }
+
+    private Object convert(DatasetVersionExport datasetVersionExport) {
+        var selection = getFieldSelection("fileMetas");
+        if (selection.isAll()) {
+            return conversions.convert(datasetVersionExport);
+        }
+        return selection.prune(objectMapper.valueToTree(convertVersionExport(datasetVersionExport, selection, "")));
+    }
+
+    /**
+     * Converts a version export, but only loads the metadata and the file metas if they are selected.
+     */
+    private VersionExportDto convertVersionExport(DatasetVersionExport datasetVersionExport, FieldSelection selection, String path) {
+        var versionExportDto = conversions.convertHeader(datasetVersionExport);
+        if (selection.includes(path + "metadata")) {
+            versionExportDto.setMetadata(datasetVersionExport.getMetadata());
+        }
+        if (selection.includes(path + "fileMetas")) {
+            versionExportDto.setFileMetas(conversions.mapFileMetaListToFileMetaDtoList(datasetVersionExport.getFileMetas()));
+        }
+        return versionExportDto;
+    }
+
+    /**
+     * The fields of the large responses can be selected with the fields query parameter (see {@link FieldSelection}). The file metas can also be left
+     * out with omitFileMetas=true; they can be read in pages from the files subresource instead. The endpoints are defined by the generated API
+     * interface, so the parameters are read from the request URI.
+     */
+    private FieldSelection getFieldSelection(String fileMetasPath) {
+        var queryParameters = uriInfo.getQueryParameters();
+        var selection = FieldSelection.parse(queryParameters.getFirst("fields"));
+        if (Boolean.parseBoolean(queryParameters.getFirst("omitFileMetas"))) {
+            selection = selection.without(fileMetasPath);
+        }
+        return selection;
+    }
+
+    private Response versionExportNotFound(String nbn) {
+        if (datasetDao.findByNbn(nbn).isEmpty()) {
+            return Response.status(Response.Status.NOT_FOUND).entity("Dataset not found").build();
+        }
+        return Response.status(Response.Status.NOT_FOUND).entity("DatasetVersionExport not found").build();
     }
 }
@@ -0,0 +1,227 @@
+/*
+ * Copyright (C) 2022 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.catalog.resources;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import nl.knaw.dans.catalog.Conversions;
+import nl.knaw.dans.catalog.api.DatasetDto;
+import nl.knaw.dans.catalog.db.DatasetDao;
+import nl.knaw.dans.catalog.db.DatasetVersionExportDao;
+import nl.knaw.dans.catalog.db.SessionRunner;
+import org.hibernate.exception.ConstraintViolationException;
+import org.mapstruct.factory.Mappers;
+
+import javax.validation.Validator;
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+import javax.ws.rs.BadRequestException;
+import javax.ws.rs.Consumes;
+import javax.ws.rs.DefaultValue;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.Status;
+import javax.ws.rs.core.StreamingOutput;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Imports datasets from a newline-delimited JSON stream of {@link DatasetDto}s while the service is running. The records are parsed one at a time and
+ * committed in chunks of commitInterval records, each chunk in a transaction of its own. The result of each record is streamed back as soon as its
+ * chunk has been committed. Records are validated like the body of POST /dataset/{nbn}, and existing datasets are reported as conflicts and left
+ * alone, as by that endpoint.
+ * <p>
+ * The first record is parsed before the response is started, so a body that is not a stream of datasets at all is rejected with 400. After that the
+ * response status is always 200, because it has been sent before the rest of the body is read; the outcome is in the result lines. A client must
+ * check the status of every line, and must treat a last line without NBN as the end of an aborted import.
+ * <p>
+ * If a chunk fails as a whole (for example, because of a constraint violation that only shows up when it is flushed), its records are retried one
+ * per transaction, so that only the offending records fail. Only validation failures and constraint violations are reported as failed records (400).
+ * Any other failure, such as the database being unavailable, ends the import with a last line with status 500, as does invalid JSON with status 400,
+ * because the rest of the stream cannot be parsed reliably. The records reported before that line have been committed.
+ */
+@Path("/datasets:bulk")
+@RequiredArgsConstructor
+@Slf4j
+public class DatasetBulkImportResource {
+    private static final Conversions conversions = Mappers.getMapper(Conversions.class);
+
+    @NonNull
+    private final DatasetDao datasetDao;
+
+    @NonNull
+    private final DatasetVersionExportDao datasetVersionExportDao;
+
+    @NonNull
+    private final SessionRunner sessionRunner;
+
+    @NonNull
+    private final ObjectMapper objectMapper;
+
+    @NonNull
+    private final Validator validator;
+
+    @POST
+    @Consumes(NdjsonWriter.APPLICATION_NDJSON)
+    @Produces(NdjsonWriter.APPLICATION_NDJSON)
+    public Response importDatasets(InputStream input, @QueryParam("commitInterval") @DefaultValue("100") @Min(1) @Max(10000) int commitInterval)
+        throws IOException {
+        MappingIterator<DatasetDto> records = objectMapper.readerFor(DatasetDto.class).readValues(input);
+        var first = new ArrayList<DatasetDto>(1);
+        try {
+            if (records.hasNextValue()) {
+                first.add(records.nextValue());
+            }
+        }
+        catch (JsonProcessingException e) {
+            records.close();
+            throw new BadRequestException("Invalid input: " + e.getOriginalMessage());
+        }
+        StreamingOutput output = outputStream -> {
+            try (var writer = new NdjsonWriter(objectMapper, outputStream); records) {
+                var chunk = new ArrayList<DatasetDto>(first);
+                while (true) {
+                    try {
+                        if (chunk.size() == commitInterval) {
+                            importChunk(writer, chunk);
+                            chunk = new ArrayList<>(commitInterval);
+                        }
+                        if (!records.hasNextValue()) {
+                            break;
+                        }
+                        chunk.add(records.nextValue());
+                    }
+                    catch (JsonProcessingException e) {
+                        importChunk(writer, chunk);
+                        abort(writer, Status.BAD_REQUEST, "Invalid input; rest of stream skipped: " + e.getOriginalMessage());
+                        return;
+                    }
+                }
+                importChunk(writer, chunk);
+            }
+            catch (ImportAbortedException e) {
+                log.error("Bulk import aborted", e.getCause());
+            }
+        };
+        return Response.ok(output).build();
+    }
+
+    private void abort(NdjsonWriter writer, Status status, String message) throws IOException {
+        writer.write(new BulkImportResult(null, status.getStatusCode(), message));
+        writer.flush();
+    }
+
+    private void importChunk(NdjsonWriter writer, List<DatasetDto> chunk) throws IOException {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        List<BulkImportResult> results = null;
+        try {
+            results = sessionRunner.inTransaction(false, session -> {
+                var chunkResults = new ArrayList<BulkImportResult>(chunk.size());
+                for (var datasetDto : chunk) {
+                    chunkResults.add(importDataset(datasetDto));
+                }
+                return chunkResults;
+            });
+        }
+        catch (RuntimeException e) {
+            log.warn("Bulk import of chunk of {} datasets failed; retrying them one by one", chunk.size(), e);
+        }
+        if (results != null) {
+            for (var result : results) {
+                writer.write(result);
+            }
+            writer.flush();
+            return;
+        }
+        for (var datasetDto : chunk) {
+            BulkImportResult result;
+            try {
+                result = sessionRunner.inTransaction(false, session -> importDataset(datasetDto));
+            }
+            catch (RuntimeException e) {
+                var recordError = recordError(e);
+                if (recordError.isEmpty()) {
+                    // Not caused by the record, so the records that follow would most likely fail the same way
+                    abort(writer, Status.INTERNAL_SERVER_ERROR, "Import aborted; rest of stream skipped: " + e.getMessage());
+                    throw new ImportAbortedException(e);
+                }
+                result = new BulkImportResult(datasetDto.getNbn(), Status.BAD_REQUEST.getStatusCode(), recordError.get());
+            }
+            writer.write(result);
+            writer.flush();
+        }
+    }
+
+    /**
+     * Returns the message for a failure that is caused by the record itself: a rejected value or a constraint violation.
+     *
+     * @param e the failure
+     * @return the message, or empty if the failure is not caused by the record
+     */
+    private static Optional<String> recordError(RuntimeException e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof ConstraintViolationException) {
+                return Optional.of(((ConstraintViolationException) t).getSQLException().getMessage());
+            }
+            if (t instanceof javax.validation.ConstraintViolationException) {
+                return Optional.of(ValidationMessages.describe(((javax.validation.ConstraintViolationException) t).getConstraintViolations()));
+            }
+            if (t instanceof IllegalArgumentException) {
+                // Conversions reject invalid values, and the DAOs report constraint violations, with an IllegalArgumentException
+                return Optional.of(t.getMessage());
+            }
+        }
+        return Optional.empty();
+    }
+
+    private BulkImportResult importDataset(DatasetDto datasetDto) {
+        var nbn = datasetDto.getNbn();
+        if (nbn == null) {
+            return new BulkImportResult(null, Status.BAD_REQUEST.getStatusCode(), "NBN is missing");
+        }
+        var violations = validator.validate(datasetDto);
+        if (!violations.isEmpty()) {
+            return new BulkImportResult(nbn, Status.BAD_REQUEST.getStatusCode(), ValidationMessages.describe(violations));
+        }
+        if (datasetDao.findByNbn(nbn).isPresent()) {
+            return new BulkImportResult(nbn, Status.CONFLICT.getStatusCode(), "Dataset already exists");
+        }
+        var dataset = conversions.convert(datasetDto);
+        for (var versionExport : dataset.getDatasetVersionExports()) {
+            datasetVersionExportDao.invalidateBagIds(versionExport.getBagId());
+        }
+        datasetDao.save(dataset);
+        return new BulkImportResult(nbn, Status.OK.getStatusCode(), null);
+    }
+
+    private static class ImportAbortedException extends RuntimeException {
+        ImportAbortedException(Throwable cause) {
+            super(cause);
+        }
+    }
+}
@@ -20,8 +20,13 @@ import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
 import nl.knaw.dans.catalog.Conversions;
 import nl.knaw.dans.catalog.db.DatasetVersionExportDao;
+import nl.knaw.dans.catalog.db.VersionExportRevision;
+import org.hibernate.FlushMode;
 import org.mapstruct.factory.Mappers;
 
+import javax.ws.rs.NotFoundException;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
 import java.net.URI;
 
@@ -31,9 +36,23 @@ public class DatasetVersionExportApiResource implements DatasetVersionExportApi
     @NonNull
     private final DatasetVersionExportDao dao;
 
+    @Context
+    private Request request;
+
     @Override
-    @UnitOfWork
+    @UnitOfWork(readOnly = true, flushMode = FlushMode.MANUAL)
     public Response getDatasetVersionExportByBagId(String bagId) {
-        return Response.ok(conversions.convert(dao.findByBagId(URI.create(bagId)))).build();
+        var bagIdUri = URI.create(bagId);
+        var revision = dao.findRevisionByBagId(bagIdUri).orElseThrow(() -> new NotFoundException("DatasetVersionExport not found"));
+        var preconditionResponse = VersionExportValidators.evaluatePreconditions(request, revision);
+        if (preconditionResponse.isPresent()) {
+            return preconditionResponse.get();
+        }
+        var datasetVersionExport = dao.findByBagId(bagIdUri);
+        if (datasetVersionExport == null) {
+            throw new NotFoundException("DatasetVersionExport not found");
+        }
+        return VersionExportValidators.addValidators(Response.ok(conversions.convert(datasetVersionExport)), VersionExportRevision.of(datasetVersionExport))
+            .build();
     }
 }
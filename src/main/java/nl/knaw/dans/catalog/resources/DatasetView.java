@@ -21,7 +21,8 @@ import nl.knaw.dans.catalog.core.Dataset;
 import nl.knaw.dans.catalog.core.DatasetVersionExport;
 import nl.knaw.dans.catalog.core.FileMeta;
 
-import java.util.ArrayList;
+import java.net.URI;
+import java.time.OffsetDateTime;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Optional;
@@ -30,22 +31,22 @@ import java.util.Optional;
 public class DatasetView extends View {
 
     private final Dataset dataset;
-    private final List<DatasetVersionExport> datasetVersionExports;
+    private final List<VersionExportView> datasetVersionExports;
     private final String title;
 
     protected DatasetView(Dataset dataset) {
         super("dataset.mustache");
         /*
          * N.B. Everything to be displayed must be fetched from the database before the View object leaves the @UnitOfWork
-         * scope. Otherwise, the database may be accessed outside a transaction (especially for LOB fields), which is not
-         * allowed. This is even true for fields that are not explicitly references from the template, such as 'metadata'.
-         * This is why a copy of the Dataset is made here, with the 'metadata' field set to null. As an alternative, the
-         * complete Dataset, DVE and all its fields could be fetched eagerly, but that could be inefficient.
+         * scope. Otherwise, the database may be accessed outside a transaction, which is not allowed. This is why the
+         * version exports, including their file metas, are copied into views here. The 'metadata' field is loaded lazily and
+         * is not displayed, so it is never retrieved from the database.
          */
         this.dataset = dataset;
-        this.datasetVersionExports = copyWithoutMetadataField(dataset.getDatasetVersionExports()).stream()
-                .sorted(Comparator.comparing(DatasetVersionExport::getOcflObjectVersionNumber).reversed())
-                .toList();
+        this.datasetVersionExports = dataset.getDatasetVersionExports().stream()
+            .sorted(Comparator.comparing(DatasetVersionExport::getOcflObjectVersionNumber).reversed())
+            .map(VersionExportView::new)
+            .toList();
         if (dataset.getDatasetVersionExports().isEmpty()) {
             this.title = "<no title>";
         }
@@ -54,30 +55,38 @@ public class DatasetView extends View {
         }
     }
 
-    private List<DatasetVersionExport> copyWithoutMetadataField(List<DatasetVersionExport> originalDves) {
-        List<DatasetVersionExport> copy = new ArrayList<>();
-        for (DatasetVersionExport dve : originalDves) {
-            DatasetVersionExport dveCopy = new DatasetVersionExport();
-            dveCopy.setId(dve.getId());
-            dveCopy.setDataset(dve.getDataset());
-            dveCopy.setBagId(dve.getBagId());
-            dveCopy.setOcflObjectVersionNumber(dve.getOcflObjectVersionNumber());
-            dveCopy.setCreatedTimestamp(dve.getCreatedTimestamp());
-            dveCopy.setTitle(dve.getTitle());
-            dveCopy.setArchivedTimestamp(dve.getArchivedTimestamp());
-            dveCopy.setDataversePidVersion(dve.getDataversePidVersion());
-            dveCopy.setOtherId(dve.getOtherId());
-            dveCopy.setOtherIdVersion(dve.getOtherIdVersion());
-            dveCopy.setMetadata(null); // Not displayed, so avoid retrieving it from the database
-            dveCopy.setDeaccessioned(dve.getDeaccessioned());
-            dveCopy.setExporter(dve.getExporter());
-            dveCopy.setExporterVersion(dve.getExporterVersion());
-            dveCopy.setSkeletonRecord(dve.getSkeletonRecord());
-            for (var fileMeta : dve.getFileMetas().stream().sorted(Comparator.comparing(FileMeta::getFilepath)).toList()) {
-                dveCopy.addFileMeta(fileMeta);
-            }
-            copy.add(dveCopy);
+    @Getter
+    public static class VersionExportView {
+        private final URI bagId;
+        private final Integer ocflObjectVersionNumber;
+        private final OffsetDateTime createdTimestamp;
+        private final OffsetDateTime archivedTimestamp;
+        private final String title;
+        private final String dataversePidVersion;
+        private final String otherId;
+        private final String otherIdVersion;
+        private final Boolean deaccessioned;
+        private final String exporter;
+        private final String exporterVersion;
+        private final Boolean skeletonRecord;
+        private final List<FileMeta> fileMetas;
+
+        private VersionExportView(DatasetVersionExport dve) {
+            this.bagId = dve.getBagId();
+            this.ocflObjectVersionNumber = dve.getOcflObjectVersionNumber();
+            this.createdTimestamp = dve.getCreatedTimestamp();
+            this.archivedTimestamp = dve.getArchivedTimestamp();
+            this.title = dve.getTitle();
+            this.dataversePidVersion = dve.getDataversePidVersion();
+            this.otherId = dve.getOtherId();
+            this.otherIdVersion = dve.getOtherIdVersion();
+            this.deaccessioned = dve.getDeaccessioned();
+            this.exporter = dve.getExporter();
+            this.exporterVersion = dve.getExporterVersion();
+            this.skeletonRecord = dve.getSkeletonRecord();
+            this.fileMetas = dve.getFileMetas().stream()
+                .sorted(Comparator.comparing(FileMeta::getFilepath))
+                .toList();
         }
-        return copy;
     }
 }
@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2022 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.catalog.resources;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * The fields of a response that were selected with the <code>fields</code> query parameter, a comma-separated list of field paths. A field of a nested
+ * object is selected with a dotted path, such as <code>versionExports.bagId</code>; selecting a field selects everything below it. Without the
+ * parameter, all fields are selected.
+ * <p>
+ * The selection is used in two ways: the parts of a DTO that are expensive to build (because they need a collection or a LOB to be loaded) are only
+ * built if {@link #includes(String)} says so, and the remaining unselected fields are removed from the response by {@link #prune(JsonNode)}.
+ */
+class FieldSelection {
+    static final FieldSelection ALL = new FieldSelection(null, Set.of());
+
+    // null means all fields
+    private final Set<String> fields;
+    private final Set<String> excluded;
+
+    private FieldSelection(Set<String> fields, Set<String> excluded) {
+        this.fields = fields;
+        this.excluded = excluded;
+    }
+
+    static FieldSelection parse(String fields) {
+        if (fields == null || fields.isBlank()) {
+            return ALL;
+        }
+        return new FieldSelection(Arrays.stream(fields.split(","))
+            .map(String::trim)
+            .filter(field -> !field.isEmpty())
+            .collect(Collectors.toUnmodifiableSet()), Set.of());
+    }
+
+    /**
+     * Returns a selection without the specified field (and the fields below it), even if it is selected explicitly.
+     */
+    FieldSelection without(String path) {
+        var newExcluded = new HashSet<>(excluded);
+        newExcluded.add(path);
+        return new FieldSelection(fields, newExcluded);
+    }
+
+    /**
+     * Returns whether the field at the specified path is needed in the response: because it is selected itself, because a field above it is selected,
+     * or because a field below it is selected.
+     */
+    boolean includes(String path) {
+        if (excluded.stream().anyMatch(field -> isSameOrBelow(path, field))) {
+            return false;
+        }
+        return fields == null || fields.stream().anyMatch(field -> isSameOrBelow(path, field) || isSameOrBelow(field, path));
+    }
+
+    boolean isAll() {
+        return fields == null && excluded.isEmpty();
+    }
+
+    /**
+     * Removes the fields that are not selected from a JSON tree.
+     *
+     * @param node the tree; it is changed in place
+     * @return the same tree
+     */
+    JsonNode prune(JsonNode node) {
+        prune(node, "");
+        return node;
+    }
+
+    private void prune(JsonNode node, String path) {
+        if (node.isArray()) {
+            node.forEach(element -> prune(element, path));
+        }
+        else if (node.isObject()) {
+            var object = (ObjectNode) node;
+            var names = new HashSet<String>();
+            object.fieldNames().forEachRemaining(names::add);
+            for (var name : names) {
+                var fieldPath = path.isEmpty() ? name : path + "." + name;
+                if (includes(fieldPath)) {
+                    prune(object.get(name), fieldPath);
+                }
+                else {
+                    object.remove(name);
+                }
+            }
+        }
+    }
+
+    private static boolean isSameOrBelow(String path, String ancestor) {
+        return path.equals(ancestor) || path.startsWith(ancestor + ".");
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright (C) 2022 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.catalog.resources;
+
+import lombok.Data;
+
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
+import java.util.List;
+
+/**
+ * The identifiers to resolve in one call to POST /resolve, by type. Each list may be left out.
+ */
+@Data
+public class ResolveRequest {
+    static final int MAX_IDENTIFIERS = 1000;
+
+    @NotNull
+    @Size(max = MAX_IDENTIFIERS)
+    private List<String> nbn = List.of();
+
+    @NotNull
+    @Size(max = MAX_IDENTIFIERS)
+    private List<String> swordToken = List.of();
+
+    @NotNull
+    @Size(max = MAX_IDENTIFIERS)
+    private List<String> dataversePid = List.of();
+
+    @NotNull
+    @Size(max = MAX_IDENTIFIERS)
+    private List<String> bagId = List.of();
+
+    @NotNull
+    @Size(max = MAX_IDENTIFIERS)
+    private List<String> otherId = List.of();
+}
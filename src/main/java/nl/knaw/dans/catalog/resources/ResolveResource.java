@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2022 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.catalog.resources;
+
+import io.dropwizard.hibernate.UnitOfWork;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import nl.knaw.dans.catalog.Conversions;
+import nl.knaw.dans.catalog.api.DatasetDto;
+import nl.knaw.dans.catalog.api.VersionExportDto;
+import nl.knaw.dans.catalog.core.Dataset;
+import nl.knaw.dans.catalog.core.UrnUuids;
+import nl.knaw.dans.catalog.db.DatasetDao;
+import nl.knaw.dans.catalog.db.DatasetVersionExportDao;
+import org.hibernate.FlushMode;
+import org.mapstruct.factory.Mappers;
+
+import javax.validation.Valid;
+import javax.validation.constraints.NotNull;
+import javax.ws.rs.BadRequestException;
+import javax.ws.rs.Consumes;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Resolves many identifiers of datasets and version exports at once, instead of one per call to getDataset, getDatasetBySwordToken and
+ * getDatasetVersionExportByBagId. Each type of identifier is looked up with a single query, and all of them in the same transaction. See
+ * {@link ResolveResult} for what is returned. A missing or empty identifier, or a bag ID that is not a urn:uuid, is rejected with 400.
+ */
+@Path("/resolve")
+@RequiredArgsConstructor
+public class ResolveResource {
+    private static final Conversions conversions = Mappers.getMapper(Conversions.class);
+
+    @NonNull
+    private final DatasetDao datasetDao;
+
+    @NonNull
+    private final DatasetVersionExportDao datasetVersionExportDao;
+
+    @POST
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    @UnitOfWork(readOnly = true, flushMode = FlushMode.MANUAL)
+    public Response resolve(@NotNull @Valid ResolveRequest request) {
+        var nbns = identifiers(request.getNbn(), "nbn");
+        var swordTokens = identifiers(request.getSwordToken(), "swordToken");
+        var dataversePids = identifiers(request.getDataversePid(), "dataversePid");
+        var otherIds = identifiers(request.getOtherId(), "otherId");
+        // Bag IDs may be given in any case, so they are matched in the canonical form, and the results keyed by the bag IDs as given
+        var bagIds = new LinkedHashMap<URI, List<String>>();
+        for (var bagId : identifiers(request.getBagId(), "bagId")) {
+            var uuid = UrnUuids.parse(toUri(bagId))
+                .orElseThrow(() -> new BadRequestException("Not a urn:uuid: " + bagId));
+            bagIds.computeIfAbsent(UrnUuids.toUri(uuid), k -> new ArrayList<>()).add(bagId);
+        }
+
+        var byBagId = new HashMap<String, VersionExportDto>();
+        for (var datasetVersionExport : datasetVersionExportDao.findByBagIds(bagIds.keySet())) {
+            var dto = conversions.convertHeader(datasetVersionExport);
+            for (var bagId : bagIds.getOrDefault(datasetVersionExport.getBagId(), List.of())) {
+                byBagId.put(bagId, dto);
+            }
+        }
+        var byOtherId = new HashMap<String, List<VersionExportDto>>();
+        for (var datasetVersionExport : datasetVersionExportDao.findByOtherIds(otherIds)) {
+            byOtherId.computeIfAbsent(datasetVersionExport.getOtherId(), k -> new ArrayList<>()).add(conversions.convertHeader(datasetVersionExport));
+        }
+        return Response.ok(new ResolveResult(
+            convertDatasets(datasetDao.findByNbns(nbns), Dataset::getNbn),
+            convertDatasets(datasetDao.findBySwordTokens(swordTokens), Dataset::getSwordToken),
+            convertDatasets(datasetDao.findByDataversePids(dataversePids), Dataset::getDataversePid),
+            byBagId,
+            byOtherId)).build();
+    }
+
+    private static Set<String> identifiers(List<String> items, String type) {
+        var identifiers = new LinkedHashSet<String>(items.size());
+        for (var item : items) {
+            if (item == null || item.isBlank()) {
+                throw new BadRequestException("Empty identifier in " + type);
+            }
+            identifiers.add(item);
+        }
+        return identifiers;
+    }
+
+    private static URI toUri(String bagId) {
+        try {
+            return new URI(bagId);
+        }
+        catch (URISyntaxException e) {
+            throw new BadRequestException("Not a urn:uuid: " + bagId);
+        }
+    }
+
+    private Map<String, DatasetDto> convertDatasets(List<Dataset> datasets, Function<Dataset, String> identifier) {
+        return datasets.stream().collect(Collectors.toMap(identifier, dataset -> conversions.convertHeader(dataset)));
+    }
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright (C) 2022 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.catalog.resources;
+
+import lombok.Value;
+import nl.knaw.dans.catalog.api.DatasetDto;
+import nl.knaw.dans.catalog.api.VersionExportDto;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The result of POST /resolve: for each type of identifier, the identifiers that were found, mapped to what they identify. Identifiers that were not
+ * found are left out. The keys are the identifiers as given in the request, also for bag IDs in another case than the canonical one. The datasets
+ * are returned without their version exports, and the version exports without their file metas and metadata.
+ */
+@Value
+public class ResolveResult {
+    Map<String, DatasetDto> nbn;
+    Map<String, DatasetDto> swordToken;
+    Map<String, DatasetDto> dataversePid;
+    Map<String, VersionExportDto> bagId;
+    // Several versions of a dataset may have the same other ID
+    Map<String, List<VersionExportDto>> otherId;
+}
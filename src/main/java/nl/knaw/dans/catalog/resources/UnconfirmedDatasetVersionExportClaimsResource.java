@@ -0,0 +1,58 @@
+/*
+ * Copyright (C) 2022 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.catalog.resources;
+
+import io.dropwizard.hibernate.UnitOfWork;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import nl.knaw.dans.catalog.Conversions;
+import nl.knaw.dans.catalog.db.DatasetVersionExportDao;
+import org.mapstruct.factory.Mappers;
+
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+import javax.ws.rs.DefaultValue;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.time.Duration;
+
+/**
+ * Hands out disjoint batches of unconfirmed version exports to concurrent transfer workers. A claimed version export is leased to the worker until it
+ * is confirmed or the lease expires, after which it can be claimed again.
+ */
+@Path("/unconfirmed-dataset-version-exports/claim")
+@RequiredArgsConstructor
+public class UnconfirmedDatasetVersionExportClaimsResource {
+    private static final Conversions conversions = Mappers.getMapper(Conversions.class);
+
+    @NonNull
+    private final DatasetVersionExportDao dao;
+
+    @NonNull
+    private final Duration leaseDuration;
+
+    @POST
+    @Produces(MediaType.APPLICATION_JSON)
+    @UnitOfWork
+    public Response claimUnconfirmedDatasetVersionExports(@QueryParam("limit") @DefaultValue("10") @Min(1) @Max(1000) Integer limit) {
+        var claimed = dao.claimUnconfirmed(limit, leaseDuration);
+        return Response.ok(conversions.convertToUnconfirmedList(claimed)).build();
+    }
+}
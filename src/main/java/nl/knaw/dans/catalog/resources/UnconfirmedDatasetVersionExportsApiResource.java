@@ -17,27 +17,48 @@ package nl.knaw.dans.catalog.resources;
 
 import io.dropwizard.hibernate.UnitOfWork;
 import lombok.RequiredArgsConstructor;
-import nl.knaw.dans.catalog.api.UnconfirmedDatasetVersionExportDto;
+import nl.knaw.dans.catalog.Conversions;
 import nl.knaw.dans.catalog.db.DatasetVersionExportDao;
+import nl.knaw.dans.catalog.db.ExportCursor;
+import nl.knaw.dans.catalog.db.UnconfirmedExport;
+import org.hibernate.FlushMode;
+import org.mapstruct.factory.Mappers;
 
+import javax.ws.rs.core.Context;
 import javax.ws.rs.core.Response;
-import java.util.ArrayList;
+import javax.ws.rs.core.UriInfo;
+import java.util.List;
 
 @RequiredArgsConstructor
 public class UnconfirmedDatasetVersionExportsApiResource implements UnconfirmedDatasetVersionExportsApi {
+    private static final Conversions conversions = Mappers.getMapper(Conversions.class);
+
     private final DatasetVersionExportDao dao;
 
+    @Context
+    private UriInfo uriInfo;
+
     @Override
-    @UnitOfWork
+    @UnitOfWork(readOnly = true, flushMode = FlushMode.MANUAL)
     public Response getUnconfirmedDatasetVersionExports(Integer limit, Integer offset) {
-        var dves = dao.findUnconfirmed(limit, offset);
-        var unconfirmedDtos = new ArrayList<UnconfirmedDatasetVersionExportDto>();
-        for (var dve : dves) {
-            unconfirmedDtos.add(new UnconfirmedDatasetVersionExportDto()
-                .datasetNbn(dve.getDataset().getNbn())
-                .storageRoot(dve.getDataset().getOcflStorageRoot())
-                .ocflObjectVersionNumber(dve.getOcflObjectVersionNumber()));
+        // The 'after' parameter selects keyset pagination. An empty value starts at the beginning of the queue.
+        var after = uriInfo.getQueryParameters().getFirst("after");
+        List<UnconfirmedExport> unconfirmed;
+        if (after == null) {
+            unconfirmed = dao.findUnconfirmed(limit, offset);
+        }
+        else {
+            unconfirmed = dao.findUnconfirmed(limit, after.isEmpty() ? null : ExportCursor.decode(after));
+        }
+        var response = Response.ok(conversions.convertUnconfirmedExportList(unconfirmed));
+        if (!unconfirmed.isEmpty() && unconfirmed.size() == limit) {
+            var last = unconfirmed.get(unconfirmed.size() - 1);
+            var next = uriInfo.getRequestUriBuilder()
+                .replaceQueryParam("offset")
+                .replaceQueryParam("after", last.toCursor().encode())
+                .build();
+            response.link(next, "next");
         }
-        return Response.ok(unconfirmedDtos).build();
+        return response.build();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright (C) 2022 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.catalog.resources;
+
+import javax.validation.ConstraintViolation;
+import java.util.Collection;
+import java.util.stream.Collectors;
+
+/**
+ * Describes constraint violations for the endpoints that validate their input themselves, because they read it from a stream instead of receiving it
+ * as a {@link javax.validation.Valid} parameter.
+ */
+final class ValidationMessages {
+
+    private ValidationMessages() {
+    }
+
+    static String describe(Collection<? extends ConstraintViolation<?>> violations) {
+        return violations.stream()
+            .map(violation -> violation.getPropertyPath() + " " + violation.getMessage())
+            .sorted()
+            .collect(Collectors.joining(", "));
+    }
+}
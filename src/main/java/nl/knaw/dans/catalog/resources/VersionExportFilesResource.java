@@ -0,0 +1,175 @@
+/*
+ * Copyright (C) 2022 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.catalog.resources;
+
+import io.dropwizard.hibernate.UnitOfWork;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import nl.knaw.dans.catalog.Conversions;
+import nl.knaw.dans.catalog.api.FileMetaDto;
+import nl.knaw.dans.catalog.core.DatasetVersionExport;
+import nl.knaw.dans.catalog.db.DatasetDao;
+import nl.knaw.dans.catalog.db.DatasetVersionExportDao;
+import nl.knaw.dans.catalog.db.FileMetaDao;
+import nl.knaw.dans.catalog.db.FilepathCursor;
+import org.hibernate.FlushMode;
+import org.mapstruct.factory.Mappers;
+
+import javax.validation.Valid;
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+import javax.ws.rs.Consumes;
+import javax.ws.rs.DefaultValue;
+import javax.ws.rs.GET;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.Status;
+import javax.ws.rs.core.UriInfo;
+import java.util.List;
+
+/**
+ * The file metas of a version export.
+ * <p>
+ * A skeleton record can be completed in chunks while the bag is still being produced: the exporter appends the file metas in numbered chunks (1, 2,
+ * 3, ...) and then finalizes the record. Each chunk is committed on its own. Sending a chunk that has already been appended again has no effect, so
+ * that a failed upload can be resumed by resending from the first chunk that was not acknowledged.
+ * <p>
+ * The file metas can be read in pages, ordered by filepath, which is much cheaper than getting the whole version export when only some of the files
+ * are needed.
+ */
+@Path("/dataset/{nbn}/version/{ocflObjectVersionNumber}/files")
+@RequiredArgsConstructor
+public class VersionExportFilesResource {
+    private static final Conversions conversions = Mappers.getMapper(Conversions.class);
+    private static final int MAX_LIMIT = 10000;
+
+    @NonNull
+    private final DatasetDao datasetDao;
+
+    @NonNull
+    private final DatasetVersionExportDao datasetVersionExportDao;
+
+    @NonNull
+    private final FileMetaDao fileMetaDao;
+
+    @Context
+    private UriInfo uriInfo;
+
+    /**
+     * Returns a page of file metas. If the page is full, the response has a Link header with rel="next" that points to the next page. Its after
+     * parameter is an opaque cursor, which should be used as it is.
+     */
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    @UnitOfWork(readOnly = true, flushMode = FlushMode.MANUAL)
+    public Response getFileMetas(@PathParam("nbn") String nbn, @PathParam("ocflObjectVersionNumber") Integer ocflObjectVersionNumber,
+        @QueryParam("after") String after, @QueryParam("prefix") String prefix, @QueryParam("minSize") @Min(0) Long minSize,
+        @QueryParam("maxSize") @Min(0) Long maxSize, @QueryParam("limit") @DefaultValue("1000") @Min(1) @Max(MAX_LIMIT) Integer limit) {
+        var datasetVersionExportOptional = datasetVersionExportDao.findByNbnAndVersion(nbn, ocflObjectVersionNumber);
+        if (datasetVersionExportOptional.isEmpty()) {
+            return versionExportNotFound(nbn);
+        }
+        var afterFilepath = after == null ? null : FilepathCursor.decode(after).getFilepath();
+        var fileMetas = fileMetaDao.findPage(datasetVersionExportOptional.get().getId(), afterFilepath, prefix, minSize, maxSize, limit);
+        var response = Response.ok(conversions.mapFileMetaListToFileMetaDtoList(fileMetas));
+        if (fileMetas.size() == limit) {
+            var next = uriInfo.getRequestUriBuilder()
+                .replaceQueryParam("after", new FilepathCursor(fileMetas.get(fileMetas.size() - 1).getFilepath()).encode())
+                .build();
+            response.link(next, "next");
+        }
+        return response.build();
+    }
+
+    @POST
+    @Consumes(MediaType.APPLICATION_JSON)
+    @UnitOfWork
+    public Response appendFileMetas(@PathParam("nbn") String nbn, @PathParam("ocflObjectVersionNumber") Integer ocflObjectVersionNumber,
+        @QueryParam("chunk") @NotNull @Min(1) Integer chunk, @NotNull @Valid List<FileMetaDto> fileMetaDtos) {
+        var datasetVersionExportOptional = datasetVersionExportDao.findByNbnAndVersionForUpdate(nbn, ocflObjectVersionNumber);
+        if (datasetVersionExportOptional.isEmpty()) {
+            return versionExportNotFound(nbn);
+        }
+        var datasetVersionExport = datasetVersionExportOptional.get();
+        if (!Boolean.TRUE.equals(datasetVersionExport.getSkeletonRecord())) {
+            return Response.status(Status.CONFLICT).entity("Not a skeleton record. Cannot append").build();
+        }
+        var lastAppendedChunk = getLastAppendedChunk(datasetVersionExport);
+        if (chunk <= lastAppendedChunk) {
+            // A retry of a chunk that was appended before
+            return Response.ok().build();
+        }
+        if (chunk != lastAppendedChunk + 1) {
+            return Response.status(Status.CONFLICT).entity("Expected chunk " + (lastAppendedChunk + 1)).build();
+        }
+        var fileMetas = conversions.mapFileMetaDtoListToFileMetaList(fileMetaDtos);
+        for (var fileMeta : fileMetas) {
+            fileMeta.setVersionExport(datasetVersionExport);
+        }
+        fileMetaDao.addAll(fileMetas);
+        datasetVersionExport.setLastAppendedChunk(chunk);
+        return Response.ok().build();
+    }
+
+    /**
+     * Marks the skeleton record as complete. If the number of chunks is specified, it must match the number of chunks appended.
+     */
+    @POST
+    @Path("finalize")
+    @UnitOfWork
+    public Response finalizeFileMetas(@PathParam("nbn") String nbn, @PathParam("ocflObjectVersionNumber") Integer ocflObjectVersionNumber,
+        @QueryParam("chunks") @Min(0) Integer chunks) {
+        var datasetVersionExportOptional = datasetVersionExportDao.findByNbnAndVersionForUpdate(nbn, ocflObjectVersionNumber);
+        if (datasetVersionExportOptional.isEmpty()) {
+            return versionExportNotFound(nbn);
+        }
+        var datasetVersionExport = datasetVersionExportOptional.get();
+        var lastAppendedChunk = getLastAppendedChunk(datasetVersionExport);
+        if (chunks != null && chunks != lastAppendedChunk) {
+            return Response.status(Status.CONFLICT).entity("Appended " + lastAppendedChunk + " chunks, not " + chunks).build();
+        }
+        if (!Boolean.TRUE.equals(datasetVersionExport.getSkeletonRecord())) {
+            if (datasetVersionExport.getLastAppendedChunk() != null) {
+                // A retry of a finalize call that succeeded before
+                return Response.ok().build();
+            }
+            return Response.status(Status.CONFLICT).entity("Not a skeleton record. Cannot finalize").build();
+        }
+        datasetVersionExport.setSkeletonRecord(false);
+        // Keep a non-null chunk count, so that a retry can be recognized
+        datasetVersionExport.setLastAppendedChunk(lastAppendedChunk);
+        return Response.ok().build();
+    }
+
+    private int getLastAppendedChunk(DatasetVersionExport datasetVersionExport) {
+        var lastAppendedChunk = datasetVersionExport.getLastAppendedChunk();
+        return lastAppendedChunk == null ? 0 : lastAppendedChunk;
+    }
+
+    private Response versionExportNotFound(String nbn) {
+        if (datasetDao.findByNbn(nbn).isEmpty()) {
+            return Response.status(Status.NOT_FOUND).entity("Dataset not found").build();
+        }
+        return Response.status(Status.NOT_FOUND).entity("DatasetVersionExport not found").build();
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright (C) 2022 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.catalog.resources;
+
+import io.dropwizard.hibernate.UnitOfWork;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import nl.knaw.dans.catalog.db.DatasetVersionExportDao;
+import nl.knaw.dans.catalog.db.SessionRunner;
+import org.hibernate.FlushMode;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.NotFoundException;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+
+/**
+ * Serves the metadata of a version export. The metadata is read from the database in slices and decompressed while it is written to the client, so
+ * it is never held in memory as a whole.
+ */
+@Path("/dataset/{nbn}/version/{ocflObjectVersionNumber}/metadata")
+@RequiredArgsConstructor
+public class VersionExportMetadataResource {
+    @NonNull
+    private final DatasetVersionExportDao dao;
+
+    @NonNull
+    private final SessionRunner sessionRunner;
+
+    @GET
+    @Produces(MediaType.TEXT_PLAIN + "; charset=UTF-8")
+    @UnitOfWork(readOnly = true, flushMode = FlushMode.MANUAL)
+    public Response getVersionExportMetadata(@PathParam("nbn") String nbn, @PathParam("ocflObjectVersionNumber") Integer ocflObjectVersionNumber) {
+        if (dao.findByNbnAndVersion(nbn, ocflObjectVersionNumber).isEmpty()) {
+            throw new NotFoundException("DatasetVersionExport not found");
+        }
+        // The unit of work has ended by the time the output is written, so the streaming needs a session of its own
+        StreamingOutput output = outputStream -> sessionRunner.inTransaction(true, session -> dao.copyMetadata(nbn, ocflObjectVersionNumber, outputStream));
+        return Response.ok(output).build();
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright (C) 2022 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.catalog.resources;
+
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.dropwizard.hibernate.UnitOfWork;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import nl.knaw.dans.catalog.Conversions;
+import nl.knaw.dans.catalog.api.FileMetaDto;
+import nl.knaw.dans.catalog.api.VersionExportDto;
+import nl.knaw.dans.catalog.core.FileMeta;
+import nl.knaw.dans.catalog.db.DatasetDao;
+import nl.knaw.dans.catalog.db.DatasetVersionExportDao;
+import nl.knaw.dans.catalog.db.FileMetaDao;
+import org.mapstruct.factory.Mappers;
+
+import javax.validation.Validator;
+import javax.ws.rs.BadRequestException;
+import javax.ws.rs.Consumes;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.Status;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+
+/**
+ * Adds a version export, like POST /dataset/{nbn}/version, but reads the request body incrementally. The fileMetas array is parsed one element at a
+ * time and the session is flushed and cleared every {@link #FLUSH_INTERVAL} file metas, so that the memory needed does not depend on the number of
+ * files. For this to work, fileMetas must be the last member of the version export object. The version export is still added in one transaction.
+ * <p>
+ * Because the body is not a {@link javax.validation.Valid} parameter, the version export and each of its file metas are validated here, as they are
+ * read. A violation rolls back the whole version export.
+ */
+@Path("/dataset/{nbn}/version:stream")
+@RequiredArgsConstructor
+@Slf4j
+public class VersionExportStreamingResource {
+    private static final Conversions conversions = Mappers.getMapper(Conversions.class);
+    private static final int FLUSH_INTERVAL = 1000;
+
+    @NonNull
+    private final DatasetDao datasetDao;
+
+    @NonNull
+    private final DatasetVersionExportDao datasetVersionExportDao;
+
+    @NonNull
+    private final FileMetaDao fileMetaDao;
+
+    @NonNull
+    private final ObjectMapper objectMapper;
+
+    @NonNull
+    private final Validator validator;
+
+    @POST
+    @Consumes(MediaType.APPLICATION_JSON)
+    @UnitOfWork
+    public Response addVersionExport(@PathParam("nbn") String nbn, InputStream input) throws IOException {
+        var datasetOptional = datasetDao.findByNbn(nbn);
+        if (datasetOptional.isEmpty()) {
+            return Response.status(Status.NOT_FOUND).entity("Dataset not found").build();
+        }
+        try (var parser = objectMapper.getFactory().createParser(input)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new BadRequestException("Expected a version export object");
+            }
+            // Collect the members that come before fileMetas
+            var header = objectMapper.createObjectNode();
+            var hasFileMetas = false;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                var name = parser.getCurrentName();
+                parser.nextToken();
+                if (name.equals("fileMetas")) {
+                    hasFileMetas = true;
+                    break;
+                }
+                header.set(name, objectMapper.readTree(parser));
+            }
+            header.putArray("fileMetas");
+            var versionExportDto = objectMapper.treeToValue(header, VersionExportDto.class);
+            if (versionExportDto.getOcflObjectVersionNumber() == null) {
+                throw new BadRequestException("ocflObjectVersionNumber must come before fileMetas");
+            }
+            validate(versionExportDto, "");
+            var latestVersionNumber = datasetVersionExportDao.findMaxVersionNumber(nbn);
+            if (latestVersionNumber.isPresent() && latestVersionNumber.get() + 1 != versionExportDto.getOcflObjectVersionNumber()) {
+                return Response.status(Status.CONFLICT).entity("ocflVersionNumber must be one higher than latest existing version's").build();
+            }
+            var versionExport = conversions.convert(versionExportDto);
+            versionExport.setDataset(datasetOptional.get());
+            datasetVersionExportDao.add(versionExport);
+
+            if (hasFileMetas && parser.currentToken() != JsonToken.VALUE_NULL) {
+                if (parser.currentToken() != JsonToken.START_ARRAY) {
+                    throw new BadRequestException("fileMetas must be an array");
+                }
+                long versionExportId = versionExport.getId();
+                long count = 0;
+                // Added in batches, so that the file contents of a whole batch are looked up at once
+                var batch = new ArrayList<FileMeta>(FLUSH_INTERVAL);
+                while (parser.nextToken() == JsonToken.START_OBJECT) {
+                    var fileMetaDto = objectMapper.readValue(parser, FileMetaDto.class);
+                    validate(fileMetaDto, "fileMetas[" + count + "].");
+                    var fileMeta = conversions.convert(fileMetaDto);
+                    fileMeta.setVersionExport(versionExport);
+                    batch.add(fileMeta);
+                    if (++count % FLUSH_INTERVAL == 0) {
+                        fileMetaDao.addAll(batch);
+                        batch.clear();
+                        fileMetaDao.flushAndClear();
+                        versionExport = datasetVersionExportDao.getReference(versionExportId);
+                    }
+                }
+                if (parser.currentToken() != JsonToken.END_ARRAY) {
+                    throw new BadRequestException("fileMetas must be an array of objects");
+                }
+                fileMetaDao.addAll(batch);
+                log.debug("Added {} file metas to version {} of {}", count, versionExportDto.getOcflObjectVersionNumber(), nbn);
+            }
+            if (hasFileMetas && parser.nextToken() != JsonToken.END_OBJECT) {
+                throw new BadRequestException("fileMetas must be the last member of the version export");
+            }
+        }
+        return Response.ok().build();
+    }
+
+    private <T> void validate(T dto, String pathPrefix) {
+        var violations = validator.validate(dto);
+        if (!violations.isEmpty()) {
+            throw new BadRequestException(pathPrefix + ValidationMessages.describe(violations));
+        }
+    }
+}
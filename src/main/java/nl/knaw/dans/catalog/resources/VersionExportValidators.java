@@ -0,0 +1,60 @@
+/*
+ * Copyright (C) 2022 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.catalog.resources;
+
+import nl.knaw.dans.catalog.db.VersionExportRevision;
+
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.ResponseBuilder;
+import java.util.Optional;
+
+/**
+ * The ETag and caching headers of the representations of a version export. The ETag is derived from the id and the row version of the version
+ * export, so a conditional request can be answered from the revision alone, before the version export is loaded. Archived version exports that are
+ * not skeleton records no longer change, so they may be cached indefinitely. Other version exports must be revalidated.
+ */
+final class VersionExportValidators {
+    private static final String IMMUTABLE = "public, max-age=31536000, immutable";
+    private static final String REVALIDATE = "no-cache";
+
+    private VersionExportValidators() {
+    }
+
+    static EntityTag entityTag(VersionExportRevision revision) {
+        return new EntityTag(revision.getId() + "-" + revision.getRowVersion());
+    }
+
+    /**
+     * Evaluates the preconditions of the request (If-None-Match, If-Match) against the revision.
+     *
+     * @param request  the request
+     * @param revision the revision of the version export
+     * @return the response (304 Not Modified or 412 Precondition Failed) if a precondition applies, empty if the version export must be returned
+     */
+    static Optional<Response> evaluatePreconditions(Request request, VersionExportRevision revision) {
+        return Optional.ofNullable(request.evaluatePreconditions(entityTag(revision)))
+            .map(builder -> addValidators(builder, revision).build());
+    }
+
+    static ResponseBuilder addValidators(ResponseBuilder builder, VersionExportRevision revision) {
+        return builder
+            .tag(entityTag(revision))
+            .header(HttpHeaders.CACHE_CONTROL, revision.isImmutable() ? IMMUTABLE : REVALIDATE);
+    }
+}
@@ -0,0 +1,70 @@
+--
+-- Copyright (C) 2022 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+--
+-- Licensed under the Apache License, Version 2.0 (the "License");
+-- you may not use this file except in compliance with the License.
+-- You may obtain a copy of the License at
+--
+-- http://www.apache.org/licenses/LICENSE-2.0
+--
+-- Unless required by applicable law or agreed to in writing, software
+-- distributed under the License is distributed on an "AS IS" BASIS,
+-- WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+-- See the License for the specific language governing permissions and
+-- limitations under the License.
+--
+
+--
+-- The schema as Hibernate's schema update created it before the schema was managed by migrations. Only applied to empty databases.
+--
+CREATE TABLE dataset
+(
+    id                bigserial    NOT NULL,
+    nbn               varchar(255) NOT NULL,
+    dataverse_pid     varchar(255),
+    sword_token       varchar(255),
+    data_supplier     varchar(255),
+    ocfl_storage_root varchar(255) NOT NULL,
+    CONSTRAINT dataset_pkey PRIMARY KEY (id),
+    CONSTRAINT dataset_nbn_key UNIQUE (nbn),
+    CONSTRAINT dataset_dataverse_pid_key UNIQUE (dataverse_pid),
+    CONSTRAINT dataset_sword_token_key UNIQUE (sword_token)
+);
+
+CREATE TABLE dataset_version_export
+(
+    id                         bigserial    NOT NULL,
+    dataset_id                 bigint       NOT NULL,
+    bag_id                     varchar(255) NOT NULL,
+    ocfl_object_version_number integer      NOT NULL,
+    created_timestamp          timestamp    NOT NULL,
+    archived_timestamp         timestamp,
+    title                      varchar(300),
+    dataverse_pid_version      varchar(255),
+    other_id                   varchar(255),
+    other_id_version           varchar(255),
+    metadata                   text,
+    deaccessioned              boolean,
+    exporter                   varchar(255),
+    exporter_version           varchar(255),
+    skeleton_record            boolean,
+    CONSTRAINT dataset_version_export_pkey PRIMARY KEY (id),
+    -- Also serves as the index on the foreign key
+    CONSTRAINT dataset_version_export_dataset_id_version_key UNIQUE (dataset_id, ocfl_object_version_number),
+    CONSTRAINT dataset_version_export_dataset_id_fkey FOREIGN KEY (dataset_id) REFERENCES dataset (id)
+);
+
+CREATE TABLE file_meta
+(
+    id                bigserial    NOT NULL,
+    version_export_id bigint       NOT NULL,
+    filepath          varchar(520) NOT NULL,
+    file_uri          varchar(255) NOT NULL,
+    byte_size         bigint       NOT NULL,
+    sha1sum           varchar(255) NOT NULL,
+    CONSTRAINT file_meta_pkey PRIMARY KEY (id),
+    -- Also serves as the index on the foreign key
+    CONSTRAINT file_meta_version_export_id_filepath_key UNIQUE (version_export_id, filepath),
+    CONSTRAINT file_meta_version_export_id_file_uri_key UNIQUE (version_export_id, file_uri),
+    CONSTRAINT file_meta_version_export_id_fkey FOREIGN KEY (version_export_id) REFERENCES dataset_version_export (id)
+);
@@ -0,0 +1,23 @@
+--
+-- Copyright (C) 2022 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+--
+-- Licensed under the Apache License, Version 2.0 (the "License");
+-- you may not use this file except in compliance with the License.
+-- You may obtain a copy of the License at
+--
+-- http://www.apache.org/licenses/LICENSE-2.0
+--
+-- Unless required by applicable law or agreed to in writing, software
+-- distributed under the License is distributed on an "AS IS" BASIS,
+-- WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+-- See the License for the specific language governing permissions and
+-- limitations under the License.
+--
+
+--
+-- The id columns used to be IDENTITY (bigserial) columns. Their backing sequences are reused by the pooled sequence generators
+-- of the entities, which require the sequence to increment by the allocation size (50).
+--
+ALTER SEQUENCE dataset_id_seq INCREMENT BY 50;
+ALTER SEQUENCE dataset_version_export_id_seq INCREMENT BY 50;
+ALTER SEQUENCE file_meta_id_seq INCREMENT BY 50;
@@ -0,0 +1,23 @@
+--
+-- Copyright (C) 2022 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+--
+-- Licensed under the Apache License, Version 2.0 (the "License");
+-- you may not use this file except in compliance with the License.
+-- You may obtain a copy of the License at
+--
+-- http://www.apache.org/licenses/LICENSE-2.0
+--
+-- Unless required by applicable law or agreed to in writing, software
+-- distributed under the License is distributed on an "AS IS" BASIS,
+-- WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+-- See the License for the specific language governing permissions and
+-- limitations under the License.
+--
+
+--
+-- Supports the (keyset-paginated) queue of version exports that have not been confirmed as archived yet. Only the unconfirmed rows are
+-- indexed, so the index stays small while the table grows. Must be run outside a transaction because of CONCURRENTLY.
+--
+CREATE INDEX CONCURRENTLY IF NOT EXISTS dataset_version_export_unconfirmed_idx
+    ON dataset_version_export (created_timestamp, id)
+    WHERE archived_timestamp IS NULL;
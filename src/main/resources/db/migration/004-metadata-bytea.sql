@@ -0,0 +1,34 @@
+--
+-- Copyright (C) 2022 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+--
+-- Licensed under the Apache License, Version 2.0 (the "License");
+-- you may not use this file except in compliance with the License.
+-- You may obtain a copy of the License at
+--
+-- http://www.apache.org/licenses/LICENSE-2.0
+--
+-- Unless required by applicable law or agreed to in writing, software
+-- distributed under the License is distributed on an "AS IS" BASIS,
+-- WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+-- See the License for the specific language governing permissions and
+-- limitations under the License.
+--
+
+--
+-- The metadata used to be mapped as a CLOB, which PostgreSQL stores as a large object that is referenced by its OID from the text column.
+-- This moves the contents of the large objects into a bytea column, which holds the metadata in the stored form of MetadataCodec. The
+-- existing values have no marker byte and are read as uncompressed UTF-8, until the background recompression rewrites them.
+--
+BEGIN;
+
+CREATE TEMPORARY TABLE metadata_large_object ON COMMIT DROP AS
+SELECT metadata::oid AS lob
+FROM dataset_version_export
+WHERE metadata IS NOT NULL;
+
+ALTER TABLE dataset_version_export
+    ALTER COLUMN metadata TYPE bytea USING lo_get(metadata::oid);
+
+SELECT lo_unlink(lob) FROM metadata_large_object;
+
+COMMIT;
@@ -0,0 +1,22 @@
+--
+-- Copyright (C) 2022 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+--
+-- Licensed under the Apache License, Version 2.0 (the "License");
+-- you may not use this file except in compliance with the License.
+-- You may obtain a copy of the License at
+--
+-- http://www.apache.org/licenses/LICENSE-2.0
+--
+-- Unless required by applicable law or agreed to in writing, software
+-- distributed under the License is distributed on an "AS IS" BASIS,
+-- WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+-- See the License for the specific language governing permissions and
+-- limitations under the License.
+--
+
+--
+-- Supports the lookup of version exports by bag ID. The foreign keys dataset_version_export.dataset_id and file_meta.version_export_id
+-- need no index of their own, because they are the leading columns of the unique constraints on (dataset_id, ocfl_object_version_number)
+-- and (version_export_id, filepath). Must be run outside a transaction because of CONCURRENTLY.
+--
+CREATE INDEX CONCURRENTLY IF NOT EXISTS dataset_version_export_bag_id_idx ON dataset_version_export (bag_id);
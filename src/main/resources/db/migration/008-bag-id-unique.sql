@@ -0,0 +1,26 @@
+--
+-- Copyright (C) 2022 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+--
+-- Licensed under the Apache License, Version 2.0 (the "License");
+-- you may not use this file except in compliance with the License.
+-- You may obtain a copy of the License at
+--
+-- http://www.apache.org/licenses/LICENSE-2.0
+--
+-- Unless required by applicable law or agreed to in writing, software
+-- distributed under the License is distributed on an "AS IS" BASIS,
+-- WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+-- See the License for the specific language governing permissions and
+-- limitations under the License.
+--
+
+--
+-- Makes the bag IDs unique. The id is included in the index, so that resolving a bag ID to a version export is an index-only scan. This
+-- replaces the non-unique index of 006. Must be run outside a transaction because of CONCURRENTLY.
+--
+-- If the unique index cannot be built, for example because of duplicate bag IDs, the script stops before the index of 006 is dropped. The
+-- changeset drops the invalid index that the failed build leaves behind before it runs this script again.
+--
+CREATE UNIQUE INDEX CONCURRENTLY IF NOT EXISTS dataset_version_export_bag_id_key ON dataset_version_export (bag_id) INCLUDE (id);
+
+DROP INDEX CONCURRENTLY IF EXISTS dataset_version_export_bag_id_idx;
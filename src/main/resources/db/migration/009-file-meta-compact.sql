@@ -0,0 +1,37 @@
+--
+-- Copyright (C) 2022 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+--
+-- Licensed under the Apache License, Version 2.0 (the "License");
+-- you may not use this file except in compliance with the License.
+-- You may obtain a copy of the License at
+--
+-- http://www.apache.org/licenses/LICENSE-2.0
+--
+-- Unless required by applicable law or agreed to in writing, software
+-- distributed under the License is distributed on an "AS IS" BASIS,
+-- WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+-- See the License for the specific language governing permissions and
+-- limitations under the License.
+--
+
+--
+-- Stores urn:uuid file URIs as native UUIDs in a new file_uuid column, leaving only other URIs in file_uri, and stores the checksums as
+-- bytea: lower case hex checksums as their raw bytes, prefixed with 1, and anything else as UTF-8 text, prefixed with 0. The space freed
+-- by the rewrite is only returned to the operating system after a VACUUM FULL of file_meta.
+--
+ALTER TABLE file_meta
+    ADD COLUMN IF NOT EXISTS file_uuid uuid,
+    ALTER COLUMN file_uri DROP NOT NULL;
+
+UPDATE file_meta
+SET file_uuid = CAST(substring(file_uri FROM length('urn:uuid:') + 1) AS uuid),
+    file_uri  = NULL
+WHERE file_uri ~ '^urn:uuid:[0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}$';
+
+ALTER TABLE file_meta
+    ALTER COLUMN sha1sum TYPE bytea USING CASE
+        WHEN sha1sum ~ '^([0-9a-f]{2})+$' THEN '\x01'::bytea || decode(sha1sum, 'hex')
+        ELSE '\x00'::bytea || convert_to(sha1sum, 'UTF8')
+    END,
+    ADD CONSTRAINT file_meta_version_export_id_file_uuid_key UNIQUE (version_export_id, file_uuid),
+    ADD CONSTRAINT file_meta_file_uri_check CHECK ((file_uuid IS NULL) <> (file_uri IS NULL));
@@ -0,0 +1,77 @@
+--
+-- Copyright (C) 2022 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+--
+-- Licensed under the Apache License, Version 2.0 (the "License");
+-- you may not use this file except in compliance with the License.
+-- You may obtain a copy of the License at
+--
+-- http://www.apache.org/licenses/LICENSE-2.0
+--
+-- Unless required by applicable law or agreed to in writing, software
+-- distributed under the License is distributed on an "AS IS" BASIS,
+-- WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+-- See the License for the specific language governing permissions and
+-- limitations under the License.
+--
+
+--
+-- Moves the file URI, byte size and checksum of the file metas into file contents, which are shared by file metas with the same values, such as the
+-- file metas of an unchanged file in consecutive versions of a dataset. The key of a file content is the SHA-256 hash of the file URI, byte size and
+-- checksum, as text separated by newlines (see FileContent.key). The space freed in file_meta is only returned to the operating system after a
+-- VACUUM FULL of file_meta.
+--
+CREATE SEQUENCE file_content_id_seq INCREMENT BY 50;
+
+CREATE TABLE file_content
+(
+    id          bigint       NOT NULL,
+    content_key bytea        NOT NULL,
+    file_uuid   uuid,
+    file_uri    varchar(255),
+    byte_size   bigint       NOT NULL,
+    sha1sum     bytea        NOT NULL,
+    CONSTRAINT file_content_pkey PRIMARY KEY (id),
+    CONSTRAINT file_content_file_uri_check CHECK ((file_uuid IS NULL) <> (file_uri IS NULL))
+);
+
+CREATE TEMPORARY TABLE file_meta_content ON COMMIT DROP AS
+SELECT id AS file_meta_id,
+       sha256(convert_to(coalesce(file_uri, 'urn:uuid:' || file_uuid) || E'\n' || byte_size || E'\n' ||
+                         CASE get_byte(sha1sum, 0)
+                             WHEN 1 THEN encode(substring(sha1sum FROM 2), 'hex')
+                             ELSE convert_from(substring(sha1sum FROM 2), 'UTF8')
+                         END, 'UTF8')) AS content_key,
+       file_uuid,
+       file_uri,
+       byte_size,
+       sha1sum
+FROM file_meta;
+
+INSERT INTO file_content (id, content_key, file_uuid, file_uri, byte_size, sha1sum)
+SELECT row_number() OVER (ORDER BY content_key), content_key, file_uuid, file_uri, byte_size, sha1sum
+FROM (SELECT DISTINCT ON (content_key) * FROM file_meta_content ORDER BY content_key) AS distinct_content;
+
+-- The pooled sequence generator takes the ids up to and including the value it gets from the sequence
+SELECT setval('file_content_id_seq', (SELECT coalesce(max(id), 0) FROM file_content) + 50, false);
+
+CREATE INDEX file_content_content_key_idx ON file_content (content_key);
+
+ALTER TABLE file_meta
+    ADD COLUMN content_id bigint;
+
+UPDATE file_meta
+SET content_id = file_content.id
+FROM file_meta_content
+         JOIN file_content ON file_content.content_key = file_meta_content.content_key
+WHERE file_meta_content.file_meta_id = file_meta.id;
+
+-- Dropping the columns also drops the unique constraints on (version_export_id, file_uuid) and (version_export_id, file_uri)
+ALTER TABLE file_meta
+    ALTER COLUMN content_id SET NOT NULL,
+    ADD CONSTRAINT file_meta_content_id_fkey FOREIGN KEY (content_id) REFERENCES file_content (id),
+    DROP COLUMN file_uuid,
+    DROP COLUMN file_uri,
+    DROP COLUMN byte_size,
+    DROP COLUMN sha1sum;
+
+CREATE INDEX file_meta_content_id_idx ON file_meta (content_id);
@@ -56,6 +56,11 @@ public class ConversionsTest {
         assertThat(fileMeta.getByteSize()).isEqualTo(456L);
     }
 
+    @Test
+    public void mapFileMetaDtoListToFileMetaList_should_map_null_to_empty_list() {
+        assertThat(conversions.mapFileMetaDtoListToFileMetaList(null)).isEmpty();
+    }
+
     @Test
     public void mapFileMetaDtoListToFileMetaList() {
         var fileMetaDto1 = new FileMetaDto()
@@ -105,7 +110,7 @@ public class ConversionsTest {
         var fileMeta1 = new FileMeta(1L, null, "filepath1", URI.create("file:///uri1"), 456L, "sha1sum1");
         var fileMeta2 = new FileMeta(2L, null, "filepath2", URI.create("file:///uri2"), 789L, "sha1sum2");
         var dve = new DatasetVersionExport();
-        dve.setBagId(URI.create("urn:uuid:1234"));
+        dve.setBagId(URI.create("urn:uuid:00000000-0000-0000-0000-000000001234"));
         dve.setOcflObjectVersionNumber(1);
         dve.setCreatedTimestamp(null);
         dve.setArchivedTimestamp(null);
@@ -123,7 +128,7 @@ public class ConversionsTest {
 
         var dveDto = conversions.convert(dve);
 
-        assertThat(dveDto.getBagId()).isEqualTo("urn:uuid:1234");
+        assertThat(dveDto.getBagId()).isEqualTo("urn:uuid:00000000-0000-0000-0000-000000001234");
         assertThat(dveDto.getOcflObjectVersionNumber()).isEqualTo(1);
         assertThat(dveDto.getCreatedTimestamp()).isNull();
         assertThat(dveDto.getArchivedTimestamp()).isNull();
@@ -160,7 +165,7 @@ public class ConversionsTest {
             .fileUri(URI.create("file:///uri2"))
             .byteSize(789L);
         var dveDto = new VersionExportDto()
-            .bagId("urn:uuid:1234")
+            .bagId("urn:uuid:00000000-0000-0000-0000-000000001234")
             .ocflObjectVersionNumber(1)
             .createdTimestamp(null)
             .archivedTimestamp(null)
@@ -177,7 +182,7 @@ public class ConversionsTest {
 
         var dve = conversions.convert(dveDto);
 
-        assertThat(dve.getBagId()).isEqualTo(URI.create("urn:uuid:1234"));
+        assertThat(dve.getBagId()).isEqualTo(URI.create("urn:uuid:00000000-0000-0000-0000-000000001234"));
         assertThat(dve.getOcflObjectVersionNumber()).isEqualTo(1);
         assertThat(dve.getCreatedTimestamp()).isNull();
         assertThat(dve.getArchivedTimestamp()).isNull();
@@ -204,11 +209,11 @@ public class ConversionsTest {
     }
 
     @Test
-    public void updateVersionExportFromDto() {
+    public void updateVersionExportPropertiesFromDto_should_leave_file_metas_alone() {
         var fileMeta1 = new FileMeta(1L, null, "filepath1", URI.create("file:///uri1"), 456L, "sha1sum1");
         var fileMeta2 = new FileMeta(2L, null, "filepath2", URI.create("file:///uri2"), 789L, "sha1sum2");
         var dve = new DatasetVersionExport();
-        dve.setBagId(URI.create("urn:uuid:1234"));
+        dve.setBagId(URI.create("urn:uuid:00000000-0000-0000-0000-000000001234"));
         dve.setOcflObjectVersionNumber(1);
         dve.setCreatedTimestamp(null);
         dve.setArchivedTimestamp(null);
@@ -235,7 +240,7 @@ public class ConversionsTest {
             .fileUri(URI.create("file:///uri4"))
             .byteSize(400L);
         var dveDto = new VersionExportDto()
-            .bagId("urn:uuid:UPDATED")
+            .bagId("urn:uuid:00000000-0000-0000-0000-00000000abcd")
             .ocflObjectVersionNumber(1)
             .createdTimestamp(null)
             .archivedTimestamp(null)
@@ -250,9 +255,9 @@ public class ConversionsTest {
             .skeletonRecord(false)
             .fileMetas(List.of(fileMetaDto1, fileMetaDto2));
 
-        conversions.updateVersionExportFromDto(dveDto, dve);
+        conversions.updateVersionExportPropertiesFromDto(dveDto, dve);
 
-        assertThat(dve.getBagId()).isEqualTo(URI.create("urn:uuid:UPDATED"));
+        assertThat(dve.getBagId()).isEqualTo(URI.create("urn:uuid:00000000-0000-0000-0000-00000000abcd"));
         assertThat(dve.getOcflObjectVersionNumber()).isEqualTo(1);
         assertThat(dve.getCreatedTimestamp()).isNull();
         assertThat(dve.getArchivedTimestamp()).isNull();
@@ -265,17 +270,9 @@ public class ConversionsTest {
         assertThat(dve.getExporter()).isEqualTo("exporter");
         assertThat(dve.getExporterVersion()).isEqualTo("exporterVersion");
         assertThat(dve.getSkeletonRecord()).isFalse();
-        assertThat(dve.getFileMetas()).hasSize(2);
-        assertThat(dve.getFileMetas().get(0).getVersionExport()).isEqualTo(dve);
-        assertThat(dve.getFileMetas().get(0).getFilepath()).isEqualTo("filepath3");
-        assertThat(dve.getFileMetas().get(0).getSha1sum()).isEqualTo("sha1sum3");
-        assertThat(dve.getFileMetas().get(0).getFileUri()).isEqualTo(URI.create("file:///uri3"));
-        assertThat(dve.getFileMetas().get(0).getByteSize()).isEqualTo(300L);
-        assertThat(dve.getFileMetas().get(1).getVersionExport()).isEqualTo(dve);
-        assertThat(dve.getFileMetas().get(1).getFilepath()).isEqualTo("filepath4");
-        assertThat(dve.getFileMetas().get(1).getSha1sum()).isEqualTo("sha1sum4");
-        assertThat(dve.getFileMetas().get(1).getFileUri()).isEqualTo(URI.create("file:///uri4"));
-        assertThat(dve.getFileMetas().get(1).getByteSize()).isEqualTo(400L);
+        assertThat(dve.getFileMetas()).containsExactly(fileMeta1, fileMeta2);
+        assertThat(dve.getFileMetas().get(0).getFilepath()).isEqualTo("filepath1");
+        assertThat(dve.getFileMetas().get(1).getFilepath()).isEqualTo("filepath2");
     }
 
     @Test
@@ -302,7 +299,7 @@ public class ConversionsTest {
             .byteSize(400L);
 
         var dveDto1 = new VersionExportDto()
-            .bagId("urn:uuid:1234")
+            .bagId("urn:uuid:00000000-0000-0000-0000-000000001234")
             .ocflObjectVersionNumber(1)
             .createdTimestamp(null)
             .archivedTimestamp(null)
@@ -317,7 +314,7 @@ public class ConversionsTest {
             .skeletonRecord(false)
             .fileMetas(List.of(fileMetaDto1, fileMetaDto2));
         var dveDto2 = new VersionExportDto()
-            .bagId("urn:uuid:5678")
+            .bagId("urn:uuid:00000000-0000-0000-0000-000000005678")
             .ocflObjectVersionNumber(2)
             .createdTimestamp(null)
             .archivedTimestamp(null)
@@ -337,7 +334,7 @@ public class ConversionsTest {
         assertThat(dves).hasSize(2);
 
         // DVE 1
-        assertThat(dves.get(0).getBagId()).isEqualTo(URI.create("urn:uuid:1234"));
+        assertThat(dves.get(0).getBagId()).isEqualTo(URI.create("urn:uuid:00000000-0000-0000-0000-000000001234"));
         assertThat(dves.get(0).getOcflObjectVersionNumber()).isEqualTo(1);
         assertThat(dves.get(0).getCreatedTimestamp()).isNull();
         assertThat(dves.get(0).getArchivedTimestamp()).isNull();
@@ -367,7 +364,7 @@ public class ConversionsTest {
         assertThat(dves.get(0).getFileMetas().get(1).getByteSize()).isEqualTo(789L);
 
         // DVE 2
-        assertThat(dves.get(1).getBagId()).isEqualTo(URI.create("urn:uuid:5678"));
+        assertThat(dves.get(1).getBagId()).isEqualTo(URI.create("urn:uuid:00000000-0000-0000-0000-000000005678"));
         assertThat(dves.get(1).getOcflObjectVersionNumber()).isEqualTo(2);
         assertThat(dves.get(1).getCreatedTimestamp()).isNull();
         assertThat(dves.get(1).getArchivedTimestamp()).isNull();
@@ -405,7 +402,7 @@ public class ConversionsTest {
         var fileMeta4 = new FileMeta(4L, null, "filepath4", URI.create("file:///uri4"), 400L, "sha1sum4");
 
         var dve1 = new DatasetVersionExport();
-        dve1.setBagId(URI.create("urn:uuid:1234"));
+        dve1.setBagId(URI.create("urn:uuid:00000000-0000-0000-0000-000000001234"));
         dve1.setOcflObjectVersionNumber(1);
         dve1.setCreatedTimestamp(null);
         dve1.setArchivedTimestamp(null);
@@ -422,7 +419,7 @@ public class ConversionsTest {
         dve1.getFileMetas().add(fileMeta2);
 
         var dve2 = new DatasetVersionExport();
-        dve2.setBagId(URI.create("urn:uuid:5678"));
+        dve2.setBagId(URI.create("urn:uuid:00000000-0000-0000-0000-000000005678"));
         dve2.setOcflObjectVersionNumber(2);
         dve2.setCreatedTimestamp(null);
         dve2.setArchivedTimestamp(null);
@@ -444,7 +441,7 @@ public class ConversionsTest {
 
         // DVE 1
         assertThat(dveDto).hasSize(2);
-        assertThat(dveDto.get(0).getBagId()).isEqualTo("urn:uuid:1234");
+        assertThat(dveDto.get(0).getBagId()).isEqualTo("urn:uuid:00000000-0000-0000-0000-000000001234");
         assertThat(dveDto.get(0).getOcflObjectVersionNumber()).isEqualTo(1);
         assertThat(dveDto.get(0).getCreatedTimestamp()).isNull();
         assertThat(dveDto.get(0).getArchivedTimestamp()).isNull();
@@ -472,7 +469,7 @@ public class ConversionsTest {
         assertThat(dveDto.get(0).getFileMetas().get(1).getByteSize()).isEqualTo(789L);
 
         // DVE 2
-        assertThat(dveDto.get(1).getBagId()).isEqualTo("urn:uuid:5678");
+        assertThat(dveDto.get(1).getBagId()).isEqualTo("urn:uuid:00000000-0000-0000-0000-000000005678");
         assertThat(dveDto.get(1).getOcflObjectVersionNumber()).isEqualTo(2);
         assertThat(dveDto.get(1).getCreatedTimestamp()).isNull();
         assertThat(dveDto.get(1).getArchivedTimestamp()).isNull();
@@ -508,7 +505,7 @@ public class ConversionsTest {
         var fileMeta4 = new FileMeta(4L, null, "filepath4", URI.create("file:///uri4"), 400L, "sha1sum4");
 
         var dve1 = new DatasetVersionExport();
-        dve1.setBagId(URI.create("urn:uuid:1234"));
+        dve1.setBagId(URI.create("urn:uuid:00000000-0000-0000-0000-000000001234"));
         dve1.setOcflObjectVersionNumber(1);
         dve1.setCreatedTimestamp(null);
         dve1.setArchivedTimestamp(null);
@@ -525,7 +522,7 @@ public class ConversionsTest {
         dve1.getFileMetas().add(fileMeta2);
 
         var dve2 = new DatasetVersionExport();
-        dve2.setBagId(URI.create("urn:uuid:5678"));
+        dve2.setBagId(URI.create("urn:uuid:00000000-0000-0000-0000-000000005678"));
         dve2.setOcflObjectVersionNumber(2);
         dve2.setCreatedTimestamp(null);
         dve2.setArchivedTimestamp(null);
@@ -561,7 +558,7 @@ public class ConversionsTest {
         
         // DVE 1
         assertThat(datasetDto.getVersionExports().get(0).getDatasetNbn()).isEqualTo("nbn");
-        assertThat(datasetDto.getVersionExports().get(0).getBagId()).isEqualTo("urn:uuid:1234");
+        assertThat(datasetDto.getVersionExports().get(0).getBagId()).isEqualTo("urn:uuid:00000000-0000-0000-0000-000000001234");
         assertThat(datasetDto.getVersionExports().get(0).getOcflObjectVersionNumber()).isEqualTo(1);
         assertThat(datasetDto.getVersionExports().get(0).getCreatedTimestamp()).isNull();
         assertThat(datasetDto.getVersionExports().get(0).getArchivedTimestamp()).isNull();
@@ -590,7 +587,7 @@ public class ConversionsTest {
         
         // DVE 2
         assertThat(datasetDto.getVersionExports().get(1).getDatasetNbn()).isEqualTo("nbn");
-        assertThat(datasetDto.getVersionExports().get(1).getBagId()).isEqualTo("urn:uuid:5678");
+        assertThat(datasetDto.getVersionExports().get(1).getBagId()).isEqualTo("urn:uuid:00000000-0000-0000-0000-000000005678");
         assertThat(datasetDto.getVersionExports().get(1).getOcflObjectVersionNumber()).isEqualTo(2);
         assertThat(datasetDto.getVersionExports().get(1).getCreatedTimestamp()).isNull();
         assertThat(datasetDto.getVersionExports().get(1).getArchivedTimestamp()).isNull();
@@ -642,7 +639,7 @@ public class ConversionsTest {
             .byteSize(400L);
 
         var dveDto1 = new VersionExportDto()
-            .bagId("urn:uuid:1234")
+            .bagId("urn:uuid:00000000-0000-0000-0000-000000001234")
             .ocflObjectVersionNumber(1)
             .createdTimestamp(null)
             .archivedTimestamp(null)
@@ -657,7 +654,7 @@ public class ConversionsTest {
             .skeletonRecord(false)
             .fileMetas(List.of(fileMetaDto1, fileMetaDto2));
         var dveDto2 = new VersionExportDto()
-            .bagId("urn:uuid:5678")
+            .bagId("urn:uuid:00000000-0000-0000-0000-000000005678")
             .ocflObjectVersionNumber(2)
             .createdTimestamp(null)
             .archivedTimestamp(null)
@@ -689,7 +686,7 @@ public class ConversionsTest {
         
         // DVE 1
         assertThat(dataset.getDatasetVersionExports().get(0).getDataset()).isEqualTo(dataset);
-        assertThat(dataset.getDatasetVersionExports().get(0).getBagId()).isEqualTo(URI.create("urn:uuid:1234"));
+        assertThat(dataset.getDatasetVersionExports().get(0).getBagId()).isEqualTo(URI.create("urn:uuid:00000000-0000-0000-0000-000000001234"));
         assertThat(dataset.getDatasetVersionExports().get(0).getOcflObjectVersionNumber()).isEqualTo(1);
         assertThat(dataset.getDatasetVersionExports().get(0).getCreatedTimestamp()).isNull();
         assertThat(dataset.getDatasetVersionExports().get(0).getArchivedTimestamp()).isNull();
@@ -720,7 +717,7 @@ public class ConversionsTest {
         
         // DVE 2
         assertThat(dataset.getDatasetVersionExports().get(1).getDataset()).isEqualTo(dataset);
-        assertThat(dataset.getDatasetVersionExports().get(1).getBagId()).isEqualTo(URI.create("urn:uuid:5678"));
+        assertThat(dataset.getDatasetVersionExports().get(1).getBagId()).isEqualTo(URI.create("urn:uuid:00000000-0000-0000-0000-000000005678"));
         assertThat(dataset.getDatasetVersionExports().get(1).getOcflObjectVersionNumber()).isEqualTo(2);
         assertThat(dataset.getDatasetVersionExports().get(1).getCreatedTimestamp()).isNull();
         assertThat(dataset.getDatasetVersionExports().get(1).getArchivedTimestamp()).isNull();
@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2022 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.catalog.cli;
+
+import org.hibernate.id.IdentifierGeneratorHelper;
+import org.hibernate.id.IntegralDataTypeHolder;
+import org.hibernate.id.enhanced.AccessCallback;
+import org.hibernate.id.enhanced.PooledOptimizer;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BulkLoadCommandTest {
+
+    /**
+     * A sequence as created by migration 001: starting at 1, with an increment of 50.
+     */
+    private static class Sequence implements AccessCallback {
+        private long next = 1;
+
+        long nextval() {
+            var value = next;
+            next += 50;
+            return value;
+        }
+
+        @Override
+        public IntegralDataTypeHolder getNextValue() {
+            return IdentifierGeneratorHelper.getIntegralDataTypeHolder(Long.class).initialize(nextval());
+        }
+
+        @Override
+        public String getTenantIdentifier() {
+            return null;
+        }
+    }
+
+    @Test
+    public void testIdBlocksMatchThoseOfThePooledOptimizer() {
+        var optimizer = new PooledOptimizer(Long.class, 50);
+        optimizer.injectInitialValue(1);
+        var hibernateSequence = new Sequence();
+        var hibernateIds = new ArrayList<Long>();
+        for (int i = 0; i < 151; i++) {
+            hibernateIds.add((Long) optimizer.generate(hibernateSequence));
+        }
+
+        var loaderSequence = new Sequence();
+        var loaderIds = new ArrayList<Long>();
+        for (int i = 0; i < 4; i++) {
+            LongStream.of(BulkLoadCommand.idBlock(loaderSequence.nextval())).forEach(loaderIds::add);
+        }
+
+        // Both use the values 1, 51, 101 and 151 of the sequence for the ids 1 to 151
+        assertThat(loaderIds).isEqualTo(hibernateIds);
+        assertThat(hibernateSequence.next).isEqualTo(loaderSequence.next);
+    }
+
+    @Test
+    public void testIdBlocksOfAFreshSequence() {
+        assertThat(BulkLoadCommand.idBlock(1)).containsExactly(1L);
+        assertThat(BulkLoadCommand.idBlock(51)).hasSize(50).startsWith(2L).endsWith(51L);
+        assertThat(BulkLoadCommand.idBlock(101)).hasSize(50).startsWith(52L).endsWith(101L);
+    }
+}
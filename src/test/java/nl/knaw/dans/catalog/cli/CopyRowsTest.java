@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2022 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.catalog.cli;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.TimeZone;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CopyRowsTest {
+
+    private static String text(CopyRows rows) throws IOException {
+        try (var reader = rows.toReader()) {
+            var writer = new StringWriter();
+            reader.transferTo(writer);
+            return writer.toString();
+        }
+    }
+
+    @Test
+    public void testSeparatesValuesAndRows() throws IOException {
+        var rows = new CopyRows();
+        rows.value(1L).value("a").endRow();
+        rows.value(2L).value("b").endRow();
+        assertThat(text(rows)).isEqualTo("1\ta\n2\tb\n");
+        assertThat(rows.getRows()).isEqualTo(2);
+    }
+
+    @Test
+    public void testEscapesSpecialCharacters() throws IOException {
+        var rows = new CopyRows();
+        rows.value("tab\there").value("new\nline").value("carriage\rreturn").value("back\\slash").value("\\N").endRow();
+        assertThat(text(rows)).isEqualTo("tab\\there\tnew\\nline\tcarriage\\rreturn\tback\\\\slash\t\\\\N\n");
+    }
+
+    @Test
+    public void testWritesNullAsBackslashN() throws IOException {
+        var rows = new CopyRows();
+        rows.value((Object) null).value((Boolean) null).value((OffsetDateTime) null).value((byte[]) null).endRow();
+        assertThat(text(rows)).isEqualTo("\\N\t\\N\t\\N\t\\N\n");
+    }
+
+    @Test
+    public void testWritesBooleans() throws IOException {
+        var rows = new CopyRows();
+        rows.value(true).value(false).endRow();
+        assertThat(text(rows)).isEqualTo("t\tf\n");
+    }
+
+    @Test
+    public void testWritesByteaInEscapedHexFormat() throws IOException {
+        var rows = new CopyRows();
+        rows.value(new byte[] { 0x00, 0x1f, (byte) 0xab, (byte) 0xff }).value(new byte[0]).endRow();
+        // After COPY unescapes the backslash, PostgreSQL reads \x001fabff and \x
+        assertThat(text(rows)).isEqualTo("\\\\x001fabff\t\\\\x\n");
+    }
+
+    @Test
+    public void testWritesTimestampsAsLocalTimeOfTheJvm() throws IOException {
+        var defaultTimeZone = TimeZone.getDefault();
+        try {
+            TimeZone.setDefault(TimeZone.getTimeZone("Europe/Amsterdam"));
+            var rows = new CopyRows();
+            rows.value(OffsetDateTime.of(2024, 1, 2, 3, 4, 5, 123_000_000, ZoneOffset.UTC))
+                .value(OffsetDateTime.of(2024, 7, 2, 3, 4, 5, 0, ZoneOffset.ofHours(-5)))
+                .endRow();
+            // Winter time is UTC+1, summer time UTC+2
+            assertThat(text(rows)).isEqualTo("2024-01-02T04:04:05.123\t2024-07-02T10:04:05\n");
+        }
+        finally {
+            TimeZone.setDefault(defaultTimeZone);
+        }
+    }
+}
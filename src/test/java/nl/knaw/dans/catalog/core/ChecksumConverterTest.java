@@ -0,0 +1,39 @@
+/*
+ * Copyright (C) 2022 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.catalog.core;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ChecksumConverterTest {
+    private final ChecksumConverter converter = new ChecksumConverter();
+
+    @Test
+    public void lower_case_hex_should_be_stored_as_raw_bytes() {
+        var sha1sum = "da39a3ee5e6b4b0d3255bfef95601890afd80709";
+        var stored = converter.convertToDatabaseColumn(sha1sum);
+        assertThat(stored).hasSize(21);
+        assertThat(converter.convertToEntityAttribute(stored)).isEqualTo(sha1sum);
+    }
+
+    @Test
+    public void other_values_should_round_trip_as_text() {
+        for (var value : new String[] { "DA39A3EE5E6B4B0D3255BFEF95601890AFD80709", "abc", "sha1sum", "" }) {
+            assertThat(converter.convertToEntityAttribute(converter.convertToDatabaseColumn(value))).isEqualTo(value);
+        }
+    }
+}
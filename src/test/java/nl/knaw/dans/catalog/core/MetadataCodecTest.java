@@ -0,0 +1,57 @@
+/*
+ * Copyright (C) 2022 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.catalog.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class MetadataCodecTest {
+    private static final String metadata = "{\"title\": \"" + "x".repeat(1000) + "\"}";
+
+    @Test
+    public void deflate_should_round_trip_and_shrink_repetitive_metadata() {
+        var stored = MetadataCodec.encode(metadata, MetadataCompression.DEFLATE);
+        assertThat(stored.length).isLessThan(metadata.length() / 4);
+        assertThat(MetadataCodec.getCompression(stored)).contains(MetadataCompression.DEFLATE);
+        assertThat(MetadataCodec.decode(stored)).isEqualTo(metadata);
+    }
+
+    @Test
+    public void none_should_round_trip() {
+        var stored = MetadataCodec.encode(metadata, MetadataCompression.NONE);
+        assertThat(MetadataCodec.getCompression(stored)).contains(MetadataCompression.NONE);
+        assertThat(MetadataCodec.decode(stored)).isEqualTo(metadata);
+    }
+
+    @Test
+    public void decode_should_read_values_without_marker_as_uncompressed_utf8() {
+        var legacy = metadata.getBytes(StandardCharsets.UTF_8);
+        assertThat(MetadataCodec.getCompression(legacy)).isEmpty();
+        assertThat(MetadataCodec.decode(legacy)).isEqualTo(metadata);
+    }
+
+    @Test
+    public void openStream_should_yield_utf8_encoded_metadata() throws Exception {
+        var stored = MetadataCodec.encode(metadata, MetadataCompression.DEFLATE);
+        try (var in = MetadataCodec.openStream(new ByteArrayInputStream(stored))) {
+            assertThat(new String(in.readAllBytes(), StandardCharsets.UTF_8)).isEqualTo(metadata);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright (C) 2022 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.catalog.core;
+
+import org.hibernate.resource.beans.spi.BeanInstanceProducer;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+public class MetadataConverterBeanContainerTest {
+
+    @Test
+    public void getBean_should_supply_converter_with_configured_compression() {
+        var fallback = mock(BeanInstanceProducer.class);
+        var container = new MetadataConverterBeanContainer(MetadataCompression.NONE);
+
+        var converter = container.getBean(MetadataConverter.class, null, fallback).getBeanInstance();
+
+        assertThat(MetadataCodec.getCompression(converter.convertToDatabaseColumn("{}"))).contains(MetadataCompression.NONE);
+        verifyNoInteractions(fallback);
+    }
+
+    @Test
+    public void getBean_should_leave_other_beans_to_fallback_producer() {
+        var fallback = mock(BeanInstanceProducer.class);
+        var other = new Object();
+        when(fallback.produceBeanInstance(Object.class)).thenReturn(other);
+        var container = new MetadataConverterBeanContainer(MetadataCompression.NONE);
+
+        assertThat(container.getBean(Object.class, null, fallback).getBeanInstance()).isSameAs(other);
+    }
+
+    @Test
+    public void default_converter_should_write_deflate() {
+        var stored = new MetadataConverter().convertToDatabaseColumn("{}");
+        assertThat(MetadataCodec.getCompression(stored)).contains(MetadataCompression.DEFLATE);
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright (C) 2022 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.catalog.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class UrnUuidsTest {
+    private static final UUID uuid = UUID.fromString("1b4e28ba-2fa1-11d2-883f-0016d3cca427");
+
+    @Test
+    public void parse_should_accept_any_case() {
+        assertThat(UrnUuids.parse(URI.create("urn:uuid:1b4e28ba-2fa1-11d2-883f-0016d3cca427"))).contains(uuid);
+        assertThat(UrnUuids.parse(URI.create("URN:UUID:1B4E28BA-2FA1-11D2-883F-0016D3CCA427"))).contains(uuid);
+    }
+
+    @Test
+    public void parse_should_reject_non_uuids() {
+        assertThat(UrnUuids.parse(URI.create("urn:nbn:1b4e28ba-2fa1-11d2-883f-0016d3cca427"))).isEmpty();
+        assertThat(UrnUuids.parse(URI.create("urn:uuid:1-2-3-4-5"))).isEmpty();
+        assertThat(UrnUuids.parse(URI.create("urn:uuid:not-a-uuid"))).isEmpty();
+    }
+
+    @Test
+    public void toUuid_should_accept_only_canonical_form() {
+        assertThat(UrnUuids.toUuid(URI.create("urn:uuid:1b4e28ba-2fa1-11d2-883f-0016d3cca427"))).contains(uuid);
+        assertThat(UrnUuids.toUuid(URI.create("urn:uuid:1B4E28BA-2FA1-11D2-883F-0016D3CCA427"))).isEmpty();
+    }
+}
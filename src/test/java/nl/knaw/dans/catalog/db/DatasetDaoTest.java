@@ -17,14 +17,20 @@ package nl.knaw.dans.catalog.db;
 
 import io.dropwizard.testing.junit5.DAOTestExtension;
 import io.dropwizard.testing.junit5.DropwizardExtensionsSupport;
+import nl.knaw.dans.catalog.config.LookupCacheConfig;
 import nl.knaw.dans.catalog.core.Dataset;
 import nl.knaw.dans.catalog.core.DatasetVersionExport;
+import nl.knaw.dans.catalog.core.FileContent;
 import nl.knaw.dans.catalog.core.FileMeta;
+import org.hibernate.Hibernate;
+import org.hibernate.cfg.AvailableSettings;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 
 import java.net.URI;
 import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -34,7 +40,9 @@ public class DatasetDaoTest {
     private final DAOTestExtension db = DAOTestExtension.newBuilder()
         .addEntityClass(Dataset.class)
         .addEntityClass(DatasetVersionExport.class)
+        .addEntityClass(FileContent.class)
         .addEntityClass(FileMeta.class)
+        .setProperty(AvailableSettings.GENERATE_STATISTICS, "true")
         .build();
     private final DatasetDao dao = new DatasetDao(db.getSessionFactory());
 
@@ -163,4 +171,93 @@ public class DatasetDaoTest {
         });
     }
 
+    @Test
+    public void testCachedLookupSeesNewlySavedDataset() {
+        var cachingDao = new DatasetDao(db.getSessionFactory(), new LookupCache("nbn", new LookupCacheConfig()), new LookupCache("sword-token", new LookupCacheConfig()));
+        assertThat(db.inTransaction(() -> cachingDao.findByNbn("123"))).isEmpty();
+
+        db.inTransaction(() -> {
+            Dataset dataset = new Dataset();
+            dataset.setNbn("123");
+            dataset.setOcflStorageRoot("datastation");
+            cachingDao.save(dataset);
+        });
+
+        assertThat(db.inTransaction(() -> cachingDao.findByNbn("123"))).isPresent();
+        assertThat(db.inTransaction(() -> cachingDao.findByNbn("123"))).isPresent();
+    }
+
+    @Test
+    public void testVisitAllVisitsDatasetsInIdOrder() {
+        db.inTransaction(() -> {
+            for (var nbn : List.of("1", "2", "3")) {
+                Dataset dataset = new Dataset();
+                dataset.setNbn(nbn);
+                dataset.setOcflStorageRoot("datastation");
+                DatasetVersionExport datasetVersionExport = new DatasetVersionExport();
+                datasetVersionExport.setBagId(URI.create("urn:uuid:" + UUID.randomUUID()));
+                datasetVersionExport.setCreatedTimestamp(OffsetDateTime.now());
+                datasetVersionExport.setOcflObjectVersionNumber(1);
+                dataset.addDatasetVersionExport(datasetVersionExport);
+                dao.save(dataset);
+            }
+        });
+
+        db.getSessionFactory().getCurrentSession().clear();
+        var nbns = new ArrayList<String>();
+        var entityCounts = new ArrayList<Integer>();
+        var count = db.inTransaction(() -> dao.visitAll(2, dataset -> {
+            // Only the dataset being visited is in the persistence context, not the graphs of the ones visited before
+            entityCounts.add(db.getSessionFactory().getCurrentSession().getStatistics().getEntityCount());
+            nbns.add(dataset.getNbn());
+            assertThat(dataset.getDatasetVersionExports()).hasSize(1);
+        }));
+        assertThat(count).isEqualTo(3);
+        assertThat(nbns).containsExactly("1", "2", "3");
+        assertThat(entityCounts).containsExactly(1, 1, 1);
+    }
+
+    @Test
+    public void testFetchVersionExportsLoadsMetadataAndFileMetas() {
+        db.inTransaction(() -> {
+            Dataset dataset = new Dataset();
+            dataset.setNbn("123");
+            dataset.setOcflStorageRoot("datastation");
+            for (var version = 1; version <= 3; version++) {
+                DatasetVersionExport datasetVersionExport = new DatasetVersionExport();
+                datasetVersionExport.setBagId(URI.create("urn:uuid:" + UUID.randomUUID()));
+                datasetVersionExport.setCreatedTimestamp(OffsetDateTime.now());
+                datasetVersionExport.setOcflObjectVersionNumber(version);
+                datasetVersionExport.setMetadata("{\"version\": " + version + "}");
+                dataset.addDatasetVersionExport(datasetVersionExport);
+
+                FileMeta fileMeta = new FileMeta();
+                fileMeta.setFilepath("filepath");
+                fileMeta.setFileUri(URI.create("urn:uuid:" + UUID.randomUUID()));
+                fileMeta.setByteSize(123L);
+                fileMeta.setSha1sum("sha1sum");
+                datasetVersionExport.addFileMeta(fileMeta);
+            }
+            dao.save(dataset);
+        });
+
+        db.getSessionFactory().getCurrentSession().clear();
+        var statistics = db.getSessionFactory().getStatistics();
+        statistics.clear();
+
+        db.inTransaction(() -> {
+            var dataset = dao.findByNbn("123").orElseThrow();
+            dao.fetchVersionExports(dataset, true, true);
+            assertThat(dataset.getDatasetVersionExports()).hasSize(3);
+            for (var datasetVersionExport : dataset.getDatasetVersionExports()) {
+                assertThat(Hibernate.isPropertyInitialized(datasetVersionExport, "metadata")).isTrue();
+                assertThat(datasetVersionExport.getMetadata()).startsWith("{\"version\": ");
+                assertThat(Hibernate.isInitialized(datasetVersionExport.getFileMetas())).isTrue();
+                assertThat(datasetVersionExport.getFileMetas()).hasSize(1);
+                assertThat(datasetVersionExport.getFileMetas().get(0).getByteSize()).isEqualTo(123L);
+            }
+        });
+        // The dataset, the metadata, the file metas with their contents, and the collection of the dataset
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(4);
+    }
 }
@@ -19,21 +19,29 @@ import io.dropwizard.testing.junit5.DAOTestExtension;
 import io.dropwizard.testing.junit5.DropwizardExtensionsSupport;
 import nl.knaw.dans.catalog.core.Dataset;
 import nl.knaw.dans.catalog.core.DatasetVersionExport;
+import nl.knaw.dans.catalog.core.FileContent;
 import nl.knaw.dans.catalog.core.FileMeta;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 
 import java.net.URI;
+import java.time.Duration;
 import java.time.OffsetDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
 
 @ExtendWith(DropwizardExtensionsSupport.class)
 public class DatasetVersionExportDaoTest {
     private final DAOTestExtension db = DAOTestExtension.newBuilder()
         .addEntityClass(Dataset.class)
         .addEntityClass(DatasetVersionExport.class)
+        .addEntityClass(FileContent.class)
         .addEntityClass(FileMeta.class)
         .build();
     private final DatasetDao datasetDao = new DatasetDao(db.getSessionFactory());
@@ -61,6 +69,25 @@ public class DatasetVersionExportDaoTest {
         });
         var datasetVersionExportFound = dveDao.findByBagId(bagId);
         assertThat(datasetVersionExportFound).isNotNull();
+        assertThat(datasetVersionExportFound.getBagId()).isEqualTo(bagId);
+        // A bag ID in another case names the same version export
+        var upperCaseBagId = URI.create(bagId.toString().toUpperCase());
+        assertThat(db.inTransaction(() -> dveDao.findRevisionByBagId(upperCaseBagId))).isPresent();
+        assertThat(dveDao.findByBagId(upperCaseBagId)).isSameAs(datasetVersionExportFound);
+        assertThat(dveDao.findByBagIds(List.of(upperCaseBagId))).containsExactly(datasetVersionExportFound);
+    }
+
+    @Test
+    public void testSetBagIdNormalizesCaseAndRejectsNonUrnUuid() {
+        var datasetVersionExport = new DatasetVersionExport();
+        var uuid = UUID.randomUUID().toString();
+
+        datasetVersionExport.setBagId(URI.create("URN:UUID:" + uuid.toUpperCase()));
+        assertThat(datasetVersionExport.getBagId()).isEqualTo(URI.create("urn:uuid:" + uuid));
+        assertThatThrownBy(() -> datasetVersionExport.setBagId(URI.create("urn:nbn:" + uuid)))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> datasetVersionExport.setBagId(URI.create("urn:uuid:1-2-3-4-5")))
+            .isInstanceOf(IllegalArgumentException.class);
     }
 
     @Test
@@ -97,9 +124,241 @@ public class DatasetVersionExportDaoTest {
 
         var unconfirmedExports = dveDao.findUnconfirmed(10, 0);
         assertThat(unconfirmedExports)
-            .extracting(DatasetVersionExport::getBagId)
-            .contains(bagId1)
-            .doesNotContain(bagId2);
+            .extracting(UnconfirmedExport::getNbn, UnconfirmedExport::getOcflStorageRoot, UnconfirmedExport::getOcflObjectVersionNumber)
+            .containsExactly(tuple("456", "datastation2", 1));
+    }
+
+    @Test
+    public void testFindUnconfirmedAfterCursor() {
+        var created = OffsetDateTime.now();
+        db.inTransaction(() -> {
+            var parentDataset = new Dataset();
+            parentDataset.setNbn("789");
+            parentDataset.setDataversePid("dataversePid3");
+            parentDataset.setSwordToken("sword:" + UUID.randomUUID());
+            parentDataset.setDataSupplier("dataSupplier3");
+            parentDataset.setOcflStorageRoot("datastation3");
+            datasetDao.save(parentDataset);
+
+            for (int i = 1; i <= 3; i++) {
+                var export = new DatasetVersionExport();
+                export.setDataset(parentDataset);
+                export.setBagId(URI.create("urn:uuid:" + UUID.randomUUID()));
+                export.setCreatedTimestamp(created.plusMinutes(i));
+                export.setOcflObjectVersionNumber(i);
+                dveDao.add(export);
+            }
+        });
+
+        var firstPage = db.inTransaction(() -> dveDao.findUnconfirmed(2, (ExportCursor) null));
+        assertThat(firstPage)
+            .extracting(UnconfirmedExport::getOcflObjectVersionNumber)
+            .containsExactly(1, 2);
+
+        var last = firstPage.get(1);
+        var cursor = ExportCursor.decode(last.toCursor().encode());
+        var secondPage = db.inTransaction(() -> dveDao.findUnconfirmed(2, cursor));
+        assertThat(secondPage)
+            .extracting(UnconfirmedExport::getOcflObjectVersionNumber)
+            .containsExactly(3);
+    }
+
+    @Test
+    public void testFindUnconfirmedPagesAcrossEqualTimestamps() {
+        var created = OffsetDateTime.now().truncatedTo(ChronoUnit.MILLIS);
+        db.inTransaction(() -> {
+            var parentDataset = new Dataset();
+            parentDataset.setNbn("7891");
+            parentDataset.setSwordToken("sword:" + UUID.randomUUID());
+            parentDataset.setOcflStorageRoot("datastation3");
+            datasetDao.save(parentDataset);
+
+            for (int i = 1; i <= 5; i++) {
+                var export = new DatasetVersionExport();
+                export.setDataset(parentDataset);
+                export.setBagId(URI.create("urn:uuid:" + UUID.randomUUID()));
+                // Versions 1 to 4 share a timestamp, so that the pages are split by id
+                export.setCreatedTimestamp(i < 5 ? created : created.plusMinutes(1));
+                export.setOcflObjectVersionNumber(i);
+                dveDao.add(export);
+            }
+        });
+
+        var versions = new ArrayList<Integer>();
+        ExportCursor cursor = null;
+        for (int pages = 0; pages < 10; pages++) {
+            var after = cursor;
+            var page = db.inTransaction(() -> dveDao.findUnconfirmed(3, after));
+            if (page.isEmpty()) {
+                break;
+            }
+            page.forEach(export -> versions.add(export.getOcflObjectVersionNumber()));
+            cursor = ExportCursor.decode(page.get(page.size() - 1).toCursor().encode());
+        }
+        assertThat(versions).containsExactly(1, 2, 3, 4, 5);
+    }
+
+    @Test
+    public void testClaimUnconfirmedHandsOutDisjointBatches() {
+        db.inTransaction(() -> {
+            var parentDataset = new Dataset();
+            parentDataset.setNbn("1011");
+            parentDataset.setSwordToken("sword:" + UUID.randomUUID());
+            parentDataset.setOcflStorageRoot("datastation4");
+            datasetDao.save(parentDataset);
+
+            for (int i = 1; i <= 2; i++) {
+                var export = new DatasetVersionExport();
+                export.setDataset(parentDataset);
+                export.setBagId(URI.create("urn:uuid:" + UUID.randomUUID()));
+                export.setCreatedTimestamp(OffsetDateTime.now());
+                export.setOcflObjectVersionNumber(i);
+                dveDao.add(export);
+            }
+        });
+
+        var firstClaim = db.inTransaction(() -> dveDao.claimUnconfirmed(1, Duration.ofMinutes(5)));
+        var secondClaim = db.inTransaction(() -> dveDao.claimUnconfirmed(1, Duration.ofMinutes(5)));
+        var thirdClaim = db.inTransaction(() -> dveDao.claimUnconfirmed(1, Duration.ofMinutes(5)));
+
+        assertThat(firstClaim).hasSize(1);
+        assertThat(secondClaim).hasSize(1);
+        assertThat(firstClaim.get(0).getId()).isNotEqualTo(secondClaim.get(0).getId());
+        assertThat(thirdClaim).isEmpty();
+    }
+
+    @Test
+    public void testClaimUnconfirmedLeavesRowVersionAlone() {
+        var bagId = URI.create("urn:uuid:" + UUID.randomUUID());
+        db.inTransaction(() -> {
+            var parentDataset = new Dataset();
+            parentDataset.setNbn("1012");
+            parentDataset.setSwordToken("sword:" + UUID.randomUUID());
+            parentDataset.setOcflStorageRoot("datastation4");
+            datasetDao.save(parentDataset);
+
+            var export = new DatasetVersionExport();
+            export.setDataset(parentDataset);
+            export.setBagId(bagId);
+            export.setCreatedTimestamp(OffsetDateTime.now());
+            export.setOcflObjectVersionNumber(1);
+            dveDao.add(export);
+        });
+        var before = db.inTransaction(() -> dveDao.findRevisionByBagId(bagId)).orElseThrow();
+
+        var claimed = db.inTransaction(() -> dveDao.claimUnconfirmed(10, Duration.ofMinutes(5)));
+
+        assertThat(claimed).extracting(DatasetVersionExport::getBagId).contains(bagId);
+        var after = db.inTransaction(() -> dveDao.findRevisionByBagId(bagId)).orElseThrow();
+        assertThat(after.getRowVersion()).isEqualTo(before.getRowVersion());
+        assertThat(db.inTransaction(() -> dveDao.findByBagId(bagId)).getLeaseExpiresTimestamp()).isNotNull();
+    }
+
+    @Test
+    public void testTargetedVersionQueries() {
+        db.inTransaction(() -> {
+            var parentDataset = new Dataset();
+            parentDataset.setNbn("1213");
+            parentDataset.setSwordToken("sword:" + UUID.randomUUID());
+            parentDataset.setOcflStorageRoot("datastation5");
+            datasetDao.save(parentDataset);
+
+            for (int i = 1; i <= 3; i++) {
+                var export = new DatasetVersionExport();
+                export.setDataset(parentDataset);
+                export.setBagId(URI.create("urn:uuid:" + UUID.randomUUID()));
+                export.setCreatedTimestamp(OffsetDateTime.now());
+                export.setOcflObjectVersionNumber(i);
+                dveDao.add(export);
+            }
+        });
+
+        db.inTransaction(() -> {
+            assertThat(dveDao.findMaxVersionNumber("1213")).contains(3);
+            assertThat(dveDao.findMaxVersionNumber("no-such-nbn")).isEmpty();
+            assertThat(dveDao.findByNbnAndVersion("1213", 2)).get()
+                .extracting(DatasetVersionExport::getOcflObjectVersionNumber)
+                .isEqualTo(2);
+            assertThat(dveDao.findByNbnAndVersion("1213", 4)).isEmpty();
+            assertThat(dveDao.findByNbnAndVersionForUpdate("1213", 3)).get()
+                .extracting(DatasetVersionExport::getOcflObjectVersionNumber)
+                .isEqualTo(3);
+            assertThat(dveDao.findByNbnAndVersionForUpdate("no-such-nbn", 3)).isEmpty();
+        });
+
+        var archivedTimestamp = OffsetDateTime.now();
+        assertThat(db.inTransaction(() -> dveDao.setArchivedTimestamp("1213", 2, archivedTimestamp))).isTrue();
+        assertThat(db.inTransaction(() -> dveDao.setArchivedTimestamp("1213", 2, archivedTimestamp))).isFalse();
+        assertThat(db.inTransaction(() -> dveDao.setArchivedTimestamp("1213", 4, archivedTimestamp))).isFalse();
+        db.inTransaction(() -> {
+            assertThat(dveDao.findByNbnAndVersion("1213", 2).orElseThrow().getArchivedTimestamp()).isNotNull();
+            assertThat(dveDao.findByNbnAndVersion("1213", 1).orElseThrow().getArchivedTimestamp()).isNull();
+        });
+    }
+
+    @Test
+    public void testFindByBagIdsAndOtherIds() {
+        var bagIds = new ArrayList<URI>();
+        db.inTransaction(() -> {
+            var parentDataset = new Dataset();
+            parentDataset.setNbn("1415");
+            parentDataset.setSwordToken("sword:" + UUID.randomUUID());
+            parentDataset.setOcflStorageRoot("datastation5");
+            datasetDao.save(parentDataset);
+
+            for (int i = 1; i <= 3; i++) {
+                var export = new DatasetVersionExport();
+                export.setDataset(parentDataset);
+                export.setBagId(URI.create("urn:uuid:" + UUID.randomUUID()));
+                export.setCreatedTimestamp(OffsetDateTime.now());
+                export.setOcflObjectVersionNumber(i);
+                export.setOtherId(i < 3 ? "other:1" : "other:2");
+                dveDao.add(export);
+                bagIds.add(export.getBagId());
+            }
+        });
+
+        db.inTransaction(() -> {
+            var unknownBagId = URI.create("urn:uuid:" + UUID.randomUUID());
+            assertThat(dveDao.findByBagIds(List.of(bagIds.get(0), bagIds.get(2), unknownBagId)))
+                .extracting(DatasetVersionExport::getOcflObjectVersionNumber)
+                .containsExactlyInAnyOrder(1, 3);
+            assertThat(dveDao.findByOtherIds(List.of("other:1", "other:3")))
+                .extracting(dve -> dve.getDataset().getNbn(), DatasetVersionExport::getOcflObjectVersionNumber)
+                .containsExactlyInAnyOrder(tuple("1415", 1), tuple("1415", 2));
+            assertThat(dveDao.findByBagIds(List.of())).isEmpty();
+        });
     }
 
+    @Test
+    public void testRevisionChangesWhenArchived() {
+        var bagId = URI.create("urn:uuid:" + UUID.randomUUID());
+        db.inTransaction(() -> {
+            var parentDataset = new Dataset();
+            parentDataset.setNbn("1617");
+            parentDataset.setSwordToken("sword:" + UUID.randomUUID());
+            parentDataset.setOcflStorageRoot("datastation6");
+            datasetDao.save(parentDataset);
+
+            var export = new DatasetVersionExport();
+            export.setDataset(parentDataset);
+            export.setBagId(bagId);
+            export.setCreatedTimestamp(OffsetDateTime.now());
+            export.setOcflObjectVersionNumber(1);
+            export.setSkeletonRecord(false);
+            dveDao.add(export);
+        });
+
+        var before = db.inTransaction(() -> dveDao.findRevisionByNbnAndVersion("1617", 1).orElseThrow());
+        assertThat(before.isImmutable()).isFalse();
+        assertThat(db.inTransaction(() -> dveDao.findRevisionByBagId(bagId))).contains(before);
+
+        db.inTransaction(() -> dveDao.setArchivedTimestamp("1617", 1, OffsetDateTime.now()));
+
+        var after = db.inTransaction(() -> dveDao.findRevisionByNbnAndVersion("1617", 1).orElseThrow());
+        assertThat(after.getId()).isEqualTo(before.getId());
+        assertThat(after.getRowVersion()).isGreaterThan(before.getRowVersion());
+        assertThat(after.isImmutable()).isTrue();
+        assertThat(dveDao.findRevisionByNbnAndVersion("1617", 2)).isEmpty();
+    }
 }
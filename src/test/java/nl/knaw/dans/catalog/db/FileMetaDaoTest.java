@@ -0,0 +1,222 @@
+/*
+ * Copyright (C) 2022 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.catalog.db;
+
+import io.dropwizard.testing.junit5.DAOTestExtension;
+import io.dropwizard.testing.junit5.DropwizardExtensionsSupport;
+import nl.knaw.dans.catalog.core.Dataset;
+import nl.knaw.dans.catalog.core.DatasetVersionExport;
+import nl.knaw.dans.catalog.core.FileContent;
+import nl.knaw.dans.catalog.core.FileMeta;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.net.URI;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@ExtendWith(DropwizardExtensionsSupport.class)
+public class FileMetaDaoTest {
+    private final DAOTestExtension db = DAOTestExtension.newBuilder()
+        .addEntityClass(Dataset.class)
+        .addEntityClass(DatasetVersionExport.class)
+        .addEntityClass(FileContent.class)
+        .addEntityClass(FileMeta.class)
+        .build();
+    private final DatasetDao datasetDao = new DatasetDao(db.getSessionFactory());
+    private final DatasetVersionExportDao dveDao = new DatasetVersionExportDao(db.getSessionFactory());
+    private final FileMetaDao fileMetaDao = new FileMetaDao(db.getSessionFactory());
+
+    private long createVersionExport() {
+        return db.inTransaction(() -> {
+            var dataset = new Dataset();
+            dataset.setNbn("123");
+            dataset.setOcflStorageRoot("datastation");
+            datasetDao.save(dataset);
+            var dve = new DatasetVersionExport();
+            dve.setDataset(dataset);
+            dve.setBagId(URI.create("urn:uuid:" + UUID.randomUUID()));
+            dve.setCreatedTimestamp(OffsetDateTime.now());
+            dve.setOcflObjectVersionNumber(1);
+            dveDao.add(dve);
+            return dve.getId();
+        });
+    }
+
+    private FileMeta fileMeta(String filepath) {
+        var fileMeta = new FileMeta();
+        fileMeta.setFilepath(filepath);
+        fileMeta.setFileUri(URI.create("urn:uuid:" + UUID.randomUUID()));
+        fileMeta.setByteSize(1L);
+        fileMeta.setSha1sum("sha1sum");
+        return fileMeta;
+    }
+
+    @Test
+    public void testAddAcrossFlushAndClear() {
+        var dveId = createVersionExport();
+        db.inTransaction(() -> {
+            var dve = dveDao.getReference(dveId);
+            for (var i = 0; i < 5; i++) {
+                var fileMeta = fileMeta("file" + i);
+                fileMeta.setVersionExport(dve);
+                fileMetaDao.add(fileMeta);
+                if (i % 2 == 1) {
+                    fileMetaDao.flushAndClear();
+                    dve = dveDao.getReference(dveId);
+                }
+            }
+        });
+
+        db.inTransaction(() -> {
+            assertThat(dveDao.get(dveId).getFileMetas())
+                .extracting(FileMeta::getFilepath)
+                .containsExactlyInAnyOrder("file0", "file1", "file2", "file3", "file4");
+        });
+    }
+
+    @Test
+    public void testReplaceAllKeepsUnchangedRows() {
+        var dveId = createVersionExport();
+        db.inTransaction(() -> {
+            var dve = dveDao.get(dveId);
+            for (var filepath : List.of("a", "b", "c")) {
+                dve.addFileMeta(fileMeta(filepath));
+            }
+        });
+        var idsBefore = db.inTransaction(() -> dveDao.get(dveId).getFileMetas().stream()
+            .collect(Collectors.toMap(FileMeta::getFilepath, FileMeta::getId)));
+
+        db.inTransaction(() -> {
+            var dve = dveDao.get(dveId);
+            var current = dve.getFileMetas().stream().collect(Collectors.toMap(FileMeta::getFilepath, f -> f));
+            var changedB = fileMeta("b");
+            changedB.setFileUri(current.get("b").getFileUri());
+            changedB.setSha1sum("changed");
+            var sameC = fileMeta("c");
+            sameC.setFileUri(current.get("c").getFileUri());
+            // a is moved to d
+            var movedA = fileMeta("d");
+            movedA.setFileUri(current.get("a").getFileUri());
+            fileMetaDao.replaceAll(dve, List.of(sameC, movedA, changedB));
+        });
+
+        db.inTransaction(() -> {
+            var fileMetas = dveDao.get(dveId).getFileMetas().stream().collect(Collectors.toMap(FileMeta::getFilepath, f -> f));
+            assertThat(fileMetas).containsOnlyKeys("b", "c", "d");
+            assertThat(fileMetas.get("b").getId()).isEqualTo(idsBefore.get("b"));
+            assertThat(fileMetas.get("b").getSha1sum()).isEqualTo("changed");
+            assertThat(fileMetas.get("c").getId()).isEqualTo(idsBefore.get("c"));
+            assertThat(fileMetas.get("d").getId()).isNotIn(idsBefore.values());
+        });
+    }
+
+    @Test
+    public void testReplaceAllRejectsDuplicateFilepaths() {
+        var dveId = createVersionExport();
+        db.inTransaction(() -> {
+            var dve = dveDao.get(dveId);
+            assertThatThrownBy(() -> fileMetaDao.replaceAll(dve, List.of(fileMeta("a"), fileMeta("a"))))
+                .isInstanceOf(IllegalArgumentException.class);
+        });
+    }
+
+    @Test
+    public void testAddAllSharesFileContents() {
+        var dveId = createVersionExport();
+        var fileUri = URI.create("urn:uuid:" + UUID.randomUUID());
+        db.inTransaction(() -> {
+            var dve = dveDao.get(dveId);
+            var fileMetas = List.of(fileMeta("a"), fileMeta("b"));
+            for (var fileMeta : fileMetas) {
+                fileMeta.setFileUri(fileUri);
+                fileMeta.setVersionExport(dve);
+            }
+            fileMetaDao.addAll(fileMetas);
+        });
+        db.inTransaction(() -> {
+            var fileMeta = fileMeta("c");
+            fileMeta.setFileUri(fileUri);
+            fileMeta.setVersionExport(dveDao.getReference(dveId));
+            fileMetaDao.add(fileMeta);
+        });
+
+        db.inTransaction(() -> {
+            var fileMetas = dveDao.get(dveId).getFileMetas();
+            assertThat(fileMetas).hasSize(3);
+            assertThat(fileMetas.stream().map(fileMeta -> fileMeta.getContent().getId()).distinct()).hasSize(1);
+        });
+    }
+
+    @Test
+    public void testReplaceAllDeletesUnusedFileContents() {
+        var dveId = createVersionExport();
+        var contentIds = db.inTransaction(() -> {
+            var dve = dveDao.get(dveId);
+            var fileMetas = List.of(fileMeta("a"), fileMeta("b"));
+            fileMetas.forEach(fileMeta -> fileMeta.setVersionExport(dve));
+            fileMetaDao.addAll(fileMetas);
+            return fileMetas.stream().collect(Collectors.toMap(FileMeta::getFilepath, fileMeta -> fileMeta.getContent().getId()));
+        });
+
+        db.inTransaction(() -> {
+            var dve = dveDao.get(dveId);
+            var current = dve.getFileMetas().stream().collect(Collectors.toMap(FileMeta::getFilepath, f -> f));
+            // a is moved to c, b is changed
+            var movedA = fileMeta("c");
+            movedA.setFileUri(current.get("a").getFileUri());
+            var changedB = fileMeta("b");
+            changedB.setFileUri(current.get("b").getFileUri());
+            changedB.setSha1sum("changed");
+            fileMetaDao.replaceAll(dve, List.of(movedA, changedB));
+        });
+
+        db.inTransaction(() -> {
+            var fileMetas = dveDao.get(dveId).getFileMetas().stream().collect(Collectors.toMap(FileMeta::getFilepath, f -> f));
+            assertThat(fileMetas.get("c").getContent().getId()).isEqualTo(contentIds.get("a"));
+            assertThat(fileMetas.get("b").getContent().getId()).isNotEqualTo(contentIds.get("b"));
+            assertThat(db.getSessionFactory().getCurrentSession().get(FileContent.class, contentIds.get("b"))).isNull();
+        });
+    }
+
+    @Test
+    public void testFindPageContinuesAfterCursorAndFilters() {
+        var dveId = createVersionExport();
+        db.inTransaction(() -> {
+            var dve = dveDao.get(dveId);
+            for (var filepath : List.of("data/a", "data/b", "data/c_1", "data/cx", "other/d")) {
+                var fileMeta = fileMeta(filepath);
+                fileMeta.setByteSize((long) filepath.length());
+                dve.addFileMeta(fileMeta);
+            }
+        });
+
+        db.inTransaction(() -> {
+            var firstPage = fileMetaDao.findPage(dveId, null, "data/", null, null, 2);
+            assertThat(firstPage).extracting(FileMeta::getFilepath).containsExactly("data/a", "data/b");
+            var secondPage = fileMetaDao.findPage(dveId, "data/b", "data/", null, null, 2);
+            assertThat(secondPage).extracting(FileMeta::getFilepath).containsExactly("data/c_1", "data/cx");
+            // The underscore in the prefix is not a wildcard
+            assertThat(fileMetaDao.findPage(dveId, null, "data/c_", null, null, 10)).extracting(FileMeta::getFilepath).containsExactly("data/c_1");
+            assertThat(fileMetaDao.findPage(dveId, null, null, 7L, 7L, 10)).extracting(FileMeta::getFilepath).containsExactly("data/cx", "other/d");
+        });
+    }
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright (C) 2022 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.catalog.db;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class FilepathCursorTest {
+
+    @Test
+    public void testRoundTripOfFilepathWithUriSpecialCharacters() {
+        var cursor = new FilepathCursor("data/{template}/100%20 done?&x=#ü.txt");
+
+        var token = cursor.encode();
+
+        assertThat(token).matches("[A-Za-z0-9_-]+");
+        assertThat(FilepathCursor.decode(token)).isEqualTo(cursor);
+    }
+
+    @Test
+    public void testDecodeRejectsInvalidToken() {
+        assertThatThrownBy(() -> FilepathCursor.decode("not a cursor!"))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageStartingWith("Invalid cursor");
+    }
+}
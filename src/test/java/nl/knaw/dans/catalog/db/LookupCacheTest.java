@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2022 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.catalog.db;
+
+import nl.knaw.dans.catalog.config.LookupCacheConfig;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LookupCacheTest {
+    private final LookupCache cache = new LookupCache("test", new LookupCacheConfig());
+    // Stands in for the table: the entities are strings, their ids the keys of this map
+    private final Map<Long, String> entities = Map.of(1L, "found");
+    private final AtomicInteger queries = new AtomicInteger();
+
+    private Optional<String> find(String key, Function<String, Optional<String>> query) {
+        return cache.find(key, k -> {
+            queries.incrementAndGet();
+            return query.apply(k);
+        }, entity -> entities.entrySet().stream().filter(e -> e.getValue().equals(entity)).findFirst().orElseThrow().getKey(), entities::get);
+    }
+
+    @Test
+    public void testCachesFoundAndNotFound() {
+        assertThat(find("absent", key -> Optional.empty())).isEmpty();
+        assertThat(find("absent", key -> Optional.of("found"))).isEmpty();
+        assertThat(find("present", key -> Optional.of("found"))).contains("found");
+        // Resolved through the cached id, without a query
+        assertThat(find("present", key -> Optional.empty())).contains("found");
+        assertThat(queries.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void testInvalidatedEntryIsLookedUpAgain() {
+        assertThat(find("key", key -> Optional.empty())).isEmpty();
+        cache.evict("key");
+        assertThat(find("key", key -> Optional.of("found"))).contains("found");
+        assertThat(queries.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void testCachedIdOfDeletedEntityIsLookedUpAgain() {
+        var deleted = new LookupCache("test", new LookupCacheConfig());
+        assertThat(deleted.find("key", key -> Optional.of("gone"), entity -> 2L, id -> null)).contains("gone");
+        // The entity with id 2 no longer exists
+        assertThat(deleted.find("key", key -> Optional.empty(), entity -> 2L, id -> null)).isEmpty();
+    }
+
+    @Test
+    public void testEvictionDuringQueryIsNotLost() throws Exception {
+        var queryStarted = new CountDownLatch(1);
+        var queryMayFinish = new CountDownLatch(1);
+        var lookup = new Thread(() -> find("key", key -> {
+            queryStarted.countDown();
+            try {
+                queryMayFinish.await();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            // The query read the database before the identifier was added
+            return Optional.empty();
+        }));
+        lookup.start();
+        queryStarted.await();
+
+        // What invalidate does when the transaction that adds the identifier completes
+        cache.evict("key");
+        queryMayFinish.countDown();
+        lookup.join();
+
+        assertThat(find("key", key -> Optional.of("found"))).contains("found");
+    }
+
+    @Test
+    public void testSlowQueryDoesNotBlockOtherKeys() throws Exception {
+        var queryStarted = new CountDownLatch(1);
+        var queryMayFinish = new CountDownLatch(1);
+        var lookup = new Thread(() -> find("slow", key -> {
+            queryStarted.countDown();
+            try {
+                queryMayFinish.await();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return Optional.empty();
+        }));
+        lookup.start();
+        queryStarted.await();
+
+        assertThat(find("fast", key -> Optional.of("found"))).contains("found");
+        queryMayFinish.countDown();
+        lookup.join();
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright (C) 2022 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.catalog.resources;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.dropwizard.jackson.Jackson;
+import io.dropwizard.testing.junit5.DropwizardExtensionsSupport;
+import io.dropwizard.testing.junit5.ResourceExtension;
+import nl.knaw.dans.catalog.api.DatasetDto;
+import nl.knaw.dans.catalog.core.Dataset;
+import nl.knaw.dans.catalog.db.DatasetDao;
+import nl.knaw.dans.catalog.db.DatasetVersionExportDao;
+import nl.knaw.dans.catalog.db.SessionRunner;
+import org.hibernate.exception.ConstraintViolationException;
+import org.hibernate.exception.JDBCConnectionException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mockito;
+
+import javax.persistence.PersistenceException;
+import javax.validation.ConstraintViolation;
+import javax.validation.Path;
+import javax.validation.Validator;
+import javax.ws.rs.client.Entity;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(DropwizardExtensionsSupport.class)
+public class DatasetBulkImportResourceTest {
+    private static final ObjectMapper objectMapper = Jackson.newObjectMapper();
+    private static final DatasetDao datasetDao = mock(DatasetDao.class);
+    private static final DatasetVersionExportDao datasetVersionExportDao = mock(DatasetVersionExportDao.class);
+    private static final SessionRunner sessionRunner = mock(SessionRunner.class);
+    private static final Validator validator = mock(Validator.class);
+
+    private final ResourceExtension EXT = ResourceExtension.builder()
+        .addResource(new DatasetBulkImportResource(datasetDao, datasetVersionExportDao, sessionRunner, objectMapper, validator))
+        .build();
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        // Run the work without a database; the DAOs are mocks
+        when(sessionRunner.inTransaction(anyBoolean(), any())).thenAnswer(invocation -> invocation.<SessionRunner.Work<?>> getArgument(1).run(null));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        Mockito.reset(datasetDao, datasetVersionExportDao, sessionRunner, validator);
+    }
+
+    private static String record(String nbn) {
+        return "{\"nbn\": \"" + nbn + "\", \"versionExports\": []}\n";
+    }
+
+    private List<JsonNode> importDatasets(String input, int commitInterval) throws IOException {
+        var output = EXT.target("/datasets:bulk")
+            .queryParam("commitInterval", commitInterval)
+            .request(NdjsonWriter.APPLICATION_NDJSON)
+            .post(Entity.entity(input, NdjsonWriter.APPLICATION_NDJSON), String.class);
+        var results = new ArrayList<JsonNode>();
+        try (var values = objectMapper.readerFor(JsonNode.class).<JsonNode> readValues(output)) {
+            while (values.hasNextValue()) {
+                results.add(values.nextValue());
+            }
+        }
+        return results;
+    }
+
+    @Test
+    public void importDatasets_should_commit_in_chunks() throws IOException {
+        var results = importDatasets(record("n1") + record("n2") + record("n3"), 2);
+
+        assertThat(results)
+            .extracting(result -> result.get("nbn").asText(), result -> result.get("status").asInt())
+            .containsExactly(tuple("n1", 200), tuple("n2", 200), tuple("n3", 200));
+        verify(sessionRunner, times(2)).inTransaction(eq(false), any());
+        verify(datasetDao, times(3)).save(any(Dataset.class));
+    }
+
+    @Test
+    public void importDatasets_should_retry_a_failed_chunk_one_record_at_a_time() throws IOException {
+        when(datasetDao.save(argThat(dataset -> dataset != null && "bad".equals(dataset.getNbn()))))
+            .thenThrow(new PersistenceException(new ConstraintViolationException("could not execute batch", new SQLException("duplicate key"), "dataset_nbn_key")));
+
+        var results = importDatasets(record("n1") + record("bad") + record("n2"), 10);
+
+        assertThat(results)
+            .extracting(result -> result.get("nbn").asText(), result -> result.get("status").asInt())
+            .containsExactly(tuple("n1", 200), tuple("bad", 400), tuple("n2", 200));
+        assertThat(results.get(1).get("message").asText()).isEqualTo("duplicate key");
+        // One attempt for the chunk, then one per record
+        verify(sessionRunner, times(4)).inTransaction(eq(false), any());
+    }
+
+    @Test
+    public void importDatasets_should_report_existing_dataset_as_conflict() throws IOException {
+        when(datasetDao.findByNbn("existing")).thenReturn(Optional.of(new Dataset()));
+
+        var results = importDatasets(record("n1") + record("existing"), 10);
+
+        assertThat(results)
+            .extracting(result -> result.get("nbn").asText(), result -> result.get("status").asInt())
+            .containsExactly(tuple("n1", 200), tuple("existing", 409));
+        verify(datasetDao, times(1)).save(any(Dataset.class));
+    }
+
+    @Test
+    public void importDatasets_should_import_records_before_invalid_json_and_skip_the_rest() throws IOException {
+        var results = importDatasets(record("n1") + "{not json}\n" + record("n2"), 10);
+
+        assertThat(results).hasSize(2);
+        assertThat(results.get(0).get("nbn").asText()).isEqualTo("n1");
+        assertThat(results.get(0).get("status").asInt()).isEqualTo(200);
+        assertThat(results.get(1).get("nbn").isNull()).isTrue();
+        assertThat(results.get(1).get("status").asInt()).isEqualTo(400);
+        assertThat(results.get(1).get("message").asText()).startsWith("Invalid input; rest of stream skipped");
+        verify(datasetDao, times(1)).save(any(Dataset.class));
+    }
+
+    @Test
+    public void importDatasets_should_abort_on_failure_not_caused_by_a_record() throws IOException {
+        when(datasetDao.save(argThat(dataset -> dataset != null && "n2".equals(dataset.getNbn())))).thenThrow(new JDBCConnectionException("connection refused", new SQLException()));
+
+        var results = importDatasets(record("n1") + record("n2") + record("n3") + record("n4"), 2);
+
+        assertThat(results).hasSize(2);
+        assertThat(results.get(0).get("nbn").asText()).isEqualTo("n1");
+        assertThat(results.get(0).get("status").asInt()).isEqualTo(200);
+        assertThat(results.get(1).get("nbn").isNull()).isTrue();
+        assertThat(results.get(1).get("status").asInt()).isEqualTo(500);
+        assertThat(results.get(1).get("message").asText()).startsWith("Import aborted; rest of stream skipped");
+        // The chunk, then n1 and n2 one by one; the second chunk is never started
+        verify(sessionRunner, times(3)).inTransaction(eq(false), any());
+    }
+
+    @Test
+    public void importDatasets_should_reject_body_that_does_not_start_with_a_record() throws IOException {
+        var response = EXT.target("/datasets:bulk")
+            .request(NdjsonWriter.APPLICATION_NDJSON)
+            .post(Entity.entity("{not json}\n" + record("n1"), NdjsonWriter.APPLICATION_NDJSON));
+
+        assertThat(response.getStatus()).isEqualTo(400);
+        verify(sessionRunner, never()).inTransaction(anyBoolean(), any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void importDatasets_should_reject_invalid_record() throws IOException {
+        var path = mock(Path.class);
+        when(path.toString()).thenReturn("versionExports[0].bagId");
+        var violation = (ConstraintViolation<DatasetDto>) mock(ConstraintViolation.class);
+        when(violation.getPropertyPath()).thenReturn(path);
+        when(violation.getMessage()).thenReturn("must not be null");
+        when(validator.validate(argThat((DatasetDto datasetDto) -> datasetDto != null && "invalid".equals(datasetDto.getNbn())))).thenReturn(Set.of(violation));
+
+        var results = importDatasets(record("invalid") + record("n1"), 10);
+
+        assertThat(results)
+            .extracting(result -> result.get("nbn").asText(), result -> result.get("status").asInt())
+            .containsExactly(tuple("invalid", 400), tuple("n1", 200));
+        assertThat(results.get(0).get("message").asText()).isEqualTo("versionExports[0].bagId must not be null");
+        verify(datasetDao, never()).save(argThat(dataset -> dataset != null && "invalid".equals(dataset.getNbn())));
+    }
+}
@@ -21,16 +21,22 @@ import nl.knaw.dans.catalog.api.VersionExportDto;
 import nl.knaw.dans.catalog.core.Dataset;
 import nl.knaw.dans.catalog.core.DatasetVersionExport;
 import nl.knaw.dans.catalog.db.DatasetVersionExportDao;
+import nl.knaw.dans.catalog.db.VersionExportRevision;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mockito;
 
+import javax.ws.rs.core.HttpHeaders;
 import java.net.URI;
+import java.time.OffsetDateTime;
+import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(DropwizardExtensionsSupport.class)
@@ -48,6 +54,8 @@ public class DatasetVersionExportApiResourceTest {
         Dataset dataset = new Dataset();
         dataset.setNbn("urn:nbn:nl:ui:13-1234-5678");
         dve = new DatasetVersionExport();
+        dve.setId(1L);
+        dve.setRowVersion(0L);
         dve.setDataset(dataset);
     }
 
@@ -60,6 +68,7 @@ public class DatasetVersionExportApiResourceTest {
     public void getDatasetVersionExportByBagId_should_return_200() {
         var bagId = URI.create("urn:uuid:ff1fc8dd-ee15-4e1c-9f73-c1a817bdb05c");
         dve.setBagId(bagId);
+        when(datasetVersionExportDao.findRevisionByBagId(bagId)).thenReturn(Optional.of(VersionExportRevision.of(dve)));
         when(datasetVersionExportDao.findByBagId(bagId)).thenReturn(dve);
 
         VersionExportDto found = EXT.target(String.format("/datasetVersionExport/%s", bagId))
@@ -71,6 +80,44 @@ public class DatasetVersionExportApiResourceTest {
         assertThat(found.getBagId()).isEqualTo(bagId.toString());
     }
 
+    @Test
+    public void getDatasetVersionExportByBagId_should_return_304_if_etag_matches() {
+        var bagId = URI.create("urn:uuid:ff1fc8dd-ee15-4e1c-9f73-c1a817bdb05c");
+        dve.setRowVersion(3L);
+        dve.setBagId(bagId);
+        dve.setArchivedTimestamp(OffsetDateTime.now());
+        dve.setSkeletonRecord(false);
+        when(datasetVersionExportDao.findRevisionByBagId(bagId)).thenReturn(Optional.of(VersionExportRevision.of(dve)));
+        when(datasetVersionExportDao.findByBagId(bagId)).thenReturn(dve);
+
+        var response = EXT.target(String.format("/datasetVersionExport/%s", bagId))
+            .request()
+            .get();
+        assertThat(response.getStatus()).isEqualTo(200);
+        assertThat(response.getHeaderString(HttpHeaders.CACHE_CONTROL)).contains("immutable");
+        var etag = response.getEntityTag();
+
+        var conditionalResponse = EXT.target(String.format("/datasetVersionExport/%s", bagId))
+            .request()
+            .header(HttpHeaders.IF_NONE_MATCH, etag)
+            .get();
+        assertThat(conditionalResponse.getStatus()).isEqualTo(304);
+        assertThat(conditionalResponse.getEntityTag()).isEqualTo(etag);
+        verify(datasetVersionExportDao, times(1)).findByBagId(bagId);
+    }
+
+    @Test
+    public void getDatasetVersionExportByBagId_should_return_404_if_not_found() {
+        var bagId = URI.create("urn:uuid:ff1fc8dd-ee15-4e1c-9f73-c1a817bdb05c");
+        when(datasetVersionExportDao.findByBagId(bagId)).thenReturn(null);
+
+        var response = EXT.target(String.format("/datasetVersionExport/%s", bagId))
+            .request()
+            .get();
+
+        assertThat(response.getStatus()).isEqualTo(404);
+    }
+
     @Test
     public void getDatasetVersionExportByBagId_should_return_400_if_bagId_is_not_a_valid_urn_uuid() {
         var bagId = URI.create("urn:uuid:invalid-uuid");
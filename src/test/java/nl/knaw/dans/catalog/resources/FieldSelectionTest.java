@@ -0,0 +1,52 @@
+/*
+ * Copyright (C) 2022 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.catalog.resources;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class FieldSelectionTest {
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    public void includes_should_cover_selected_fields_their_descendants_and_their_ancestors() {
+        var selection = FieldSelection.parse("nbn, versionExports.bagId");
+        assertThat(selection.includes("nbn")).isTrue();
+        assertThat(selection.includes("versionExports")).isTrue();
+        assertThat(selection.includes("versionExports.bagId")).isTrue();
+        assertThat(selection.includes("versionExports.fileMetas")).isFalse();
+        assertThat(selection.includes("nbnx")).isFalse();
+        assertThat(FieldSelection.parse("versionExports").includes("versionExports.fileMetas.filepath")).isTrue();
+    }
+
+    @Test
+    public void without_should_exclude_field_even_if_selected() {
+        var selection = FieldSelection.parse(null).without("versionExports.fileMetas");
+        assertThat(selection.isAll()).isFalse();
+        assertThat(selection.includes("versionExports.bagId")).isTrue();
+        assertThat(selection.includes("versionExports.fileMetas")).isFalse();
+        assertThat(selection.includes("versionExports.fileMetas.filepath")).isFalse();
+    }
+
+    @Test
+    public void prune_should_remove_unselected_fields() throws Exception {
+        var tree = objectMapper.readTree("{\"nbn\": \"urn:nbn:1\", \"dataSupplier\": \"x\", \"versionExports\": [{\"bagId\": \"urn:uuid:1\", \"title\": \"t\"}]}");
+        FieldSelection.parse("nbn,versionExports.bagId").prune(tree);
+        assertThat(tree.toString()).isEqualTo("{\"nbn\":\"urn:nbn:1\",\"versionExports\":[{\"bagId\":\"urn:uuid:1\"}]}");
+    }
+}
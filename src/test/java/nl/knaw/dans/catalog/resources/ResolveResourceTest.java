@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2022 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.catalog.resources;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import io.dropwizard.testing.junit5.DropwizardExtensionsSupport;
+import io.dropwizard.testing.junit5.ResourceExtension;
+import nl.knaw.dans.catalog.core.Dataset;
+import nl.knaw.dans.catalog.core.DatasetVersionExport;
+import nl.knaw.dans.catalog.db.DatasetDao;
+import nl.knaw.dans.catalog.db.DatasetVersionExportDao;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mockito;
+
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.net.URI;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(DropwizardExtensionsSupport.class)
+public class ResolveResourceTest {
+    private static final DatasetDao datasetDao = mock(DatasetDao.class);
+    private static final DatasetVersionExportDao datasetVersionExportDao = mock(DatasetVersionExportDao.class);
+
+    private final ResourceExtension EXT = ResourceExtension.builder()
+        .addResource(new ResolveResource(datasetDao, datasetVersionExportDao))
+        .build();
+
+    @AfterEach
+    public void tearDown() {
+        Mockito.reset(datasetDao, datasetVersionExportDao);
+    }
+
+    private Response resolve(String request) {
+        return EXT.target("/resolve")
+            .request(MediaType.APPLICATION_JSON)
+            .post(Entity.json(request));
+    }
+
+    @Test
+    public void resolve_should_key_bag_ids_as_given_in_any_case() {
+        var bagId = URI.create("urn:uuid:ff1fc8dd-ee15-4e1c-9f73-c1a817bdb05c");
+        var upperCaseBagId = "URN:UUID:FF1FC8DD-EE15-4E1C-9F73-C1A817BDB05C";
+        var dataset = new Dataset();
+        dataset.setNbn("urn:nbn:nl:ui:13-1234-5678");
+        var dve = new DatasetVersionExport();
+        dve.setDataset(dataset);
+        dve.setBagId(bagId);
+        when(datasetVersionExportDao.findByBagIds(any())).thenReturn(List.of(dve));
+
+        var response = resolve("{\"bagId\": [\"" + bagId + "\", \"" + upperCaseBagId + "\"]}");
+
+        assertThat(response.getStatus()).isEqualTo(200);
+        var found = response.readEntity(JsonNode.class).get("bagId");
+        assertThat(found.get(bagId.toString()).get("datasetNbn").asText()).isEqualTo("urn:nbn:nl:ui:13-1234-5678");
+        assertThat(found.get(upperCaseBagId).get("datasetNbn").asText()).isEqualTo("urn:nbn:nl:ui:13-1234-5678");
+        // Both forms are looked up once, in the canonical form
+        verify(datasetVersionExportDao).findByBagIds(argThat(bagIds -> bagIds.size() == 1 && bagIds.contains(bagId)));
+    }
+
+    @Test
+    public void resolve_should_return_400_for_null_identifier() {
+        var response = resolve("{\"nbn\": [\"urn:nbn:nl:ui:13-1234-5678\", null]}");
+
+        assertThat(response.getStatus()).isEqualTo(400);
+        verifyNoInteractions(datasetDao, datasetVersionExportDao);
+    }
+
+    @Test
+    public void resolve_should_return_400_for_bag_id_that_is_not_a_urn_uuid() {
+        var response = resolve("{\"bagId\": [\"urn:uuid:not-a-uuid\"]}");
+
+        assertThat(response.getStatus()).isEqualTo(400);
+        verifyNoInteractions(datasetDao, datasetVersionExportDao);
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright (C) 2022 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.catalog.resources;
+
+import io.dropwizard.testing.junit5.DAOTestExtension;
+import io.dropwizard.testing.junit5.DropwizardExtensionsSupport;
+import nl.knaw.dans.catalog.api.FileMetaDto;
+import nl.knaw.dans.catalog.core.Dataset;
+import nl.knaw.dans.catalog.core.DatasetVersionExport;
+import nl.knaw.dans.catalog.core.FileContent;
+import nl.knaw.dans.catalog.core.FileMeta;
+import nl.knaw.dans.catalog.db.DatasetDao;
+import nl.knaw.dans.catalog.db.DatasetVersionExportDao;
+import nl.knaw.dans.catalog.db.FileMetaDao;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.net.URI;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Tests the chunk protocol for completing skeleton records. The resource methods are called directly, each in a transaction of its own, as the
+ * {@link io.dropwizard.hibernate.UnitOfWork} would.
+ */
+@ExtendWith(DropwizardExtensionsSupport.class)
+public class VersionExportFilesResourceTest {
+    private static final String NBN = "urn:nbn:nl:ui:13-1234-5678";
+
+    private final DAOTestExtension db = DAOTestExtension.newBuilder()
+        .addEntityClass(Dataset.class)
+        .addEntityClass(DatasetVersionExport.class)
+        .addEntityClass(FileContent.class)
+        .addEntityClass(FileMeta.class)
+        .build();
+    private final DatasetDao datasetDao = new DatasetDao(db.getSessionFactory());
+    private final DatasetVersionExportDao dveDao = new DatasetVersionExportDao(db.getSessionFactory());
+    private final FileMetaDao fileMetaDao = new FileMetaDao(db.getSessionFactory());
+    private final VersionExportFilesResource resource = new VersionExportFilesResource(datasetDao, dveDao, fileMetaDao);
+
+    private long dveId;
+
+    @BeforeEach
+    public void setUp() {
+        dveId = db.inTransaction(() -> {
+            var dataset = new Dataset();
+            dataset.setNbn(NBN);
+            dataset.setOcflStorageRoot("datastation");
+            datasetDao.save(dataset);
+            var dve = new DatasetVersionExport();
+            dve.setDataset(dataset);
+            dve.setBagId(URI.create("urn:uuid:" + UUID.randomUUID()));
+            dve.setCreatedTimestamp(OffsetDateTime.now());
+            dve.setOcflObjectVersionNumber(1);
+            dve.setSkeletonRecord(true);
+            dveDao.add(dve);
+            return dve.getId();
+        });
+    }
+
+    private static FileMetaDto fileMetaDto(String filepath) {
+        return new FileMetaDto()
+            .filepath(filepath)
+            .fileUri(URI.create("urn:uuid:" + UUID.randomUUID()))
+            .byteSize(1L)
+            .sha1sum("sha1sum");
+    }
+
+    private int append(int chunk, String... filepaths) {
+        var fileMetaDtos = new ArrayList<FileMetaDto>();
+        for (var filepath : filepaths) {
+            fileMetaDtos.add(fileMetaDto(filepath));
+        }
+        return db.inTransaction(() -> resource.appendFileMetas(NBN, 1, chunk, fileMetaDtos).getStatus());
+    }
+
+    private int finalizeChunks(Integer chunks) {
+        return db.inTransaction(() -> resource.finalizeFileMetas(NBN, 1, chunks).getStatus());
+    }
+
+    private List<String> filepaths() {
+        return db.inTransaction(() -> fileMetaDao.findPage(dveId, null, null, null, null, 100).stream().map(FileMeta::getFilepath).toList());
+    }
+
+    @Test
+    public void appendFileMetas_should_append_chunks_in_order() {
+        assertThat(append(1, "a", "b")).isEqualTo(200);
+        assertThat(append(2, "c")).isEqualTo(200);
+
+        assertThat(filepaths()).containsExactly("a", "b", "c");
+        assertThat(db.inTransaction(() -> dveDao.get(dveId).getLastAppendedChunk())).isEqualTo(2);
+    }
+
+    @Test
+    public void appendFileMetas_should_ignore_replayed_chunk() {
+        assertThat(append(1, "a")).isEqualTo(200);
+        assertThat(append(1, "a")).isEqualTo(200);
+
+        assertThat(filepaths()).containsExactly("a");
+        assertThat(db.inTransaction(() -> dveDao.get(dveId).getLastAppendedChunk())).isEqualTo(1);
+    }
+
+    @Test
+    public void appendFileMetas_should_return_409_for_skipped_chunk() {
+        assertThat(append(1, "a")).isEqualTo(200);
+        assertThat(append(3, "c")).isEqualTo(409);
+
+        assertThat(filepaths()).containsExactly("a");
+    }
+
+    @Test
+    public void appendFileMetas_should_return_400_for_filepath_in_earlier_chunk() {
+        assertThat(append(1, "a")).isEqualTo(200);
+
+        assertThatThrownBy(() -> append(2, "b", "a"))
+            .isInstanceOfSatisfying(IllegalArgumentException.class, e -> assertThat(new IllegalArgumentExceptionMapper().toResponse(e).getStatus()).isEqualTo(400));
+    }
+
+    @Test
+    public void finalizeFileMetas_should_return_409_for_wrong_chunk_count() {
+        assertThat(append(1, "a")).isEqualTo(200);
+        assertThat(append(2, "b")).isEqualTo(200);
+
+        assertThat(finalizeChunks(3)).isEqualTo(409);
+        assertThat(db.inTransaction(() -> dveDao.get(dveId).getSkeletonRecord())).isTrue();
+    }
+
+    @Test
+    public void finalizeFileMetas_should_accept_repeated_call() {
+        assertThat(append(1, "a")).isEqualTo(200);
+
+        assertThat(finalizeChunks(1)).isEqualTo(200);
+        assertThat(finalizeChunks(1)).isEqualTo(200);
+
+        var dve = db.inTransaction(() -> dveDao.get(dveId));
+        assertThat(dve.getSkeletonRecord()).isFalse();
+        assertThat(dve.getLastAppendedChunk()).isEqualTo(1);
+        // Appending is no longer possible
+        assertThat(append(2, "b")).isEqualTo(409);
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright (C) 2022 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.catalog.resources;
+
+import io.dropwizard.jackson.Jackson;
+import io.dropwizard.testing.junit5.DropwizardExtensionsSupport;
+import io.dropwizard.testing.junit5.ResourceExtension;
+import nl.knaw.dans.catalog.api.FileMetaDto;
+import nl.knaw.dans.catalog.core.Dataset;
+import nl.knaw.dans.catalog.core.DatasetVersionExport;
+import nl.knaw.dans.catalog.core.FileMeta;
+import nl.knaw.dans.catalog.db.DatasetDao;
+import nl.knaw.dans.catalog.db.DatasetVersionExportDao;
+import nl.knaw.dans.catalog.db.FileMetaDao;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mockito;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Path;
+import javax.validation.Validator;
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(DropwizardExtensionsSupport.class)
+public class VersionExportStreamingResourceTest {
+    private static final String NBN = "urn:nbn:nl:ui:13-1234-5678";
+    private static final DatasetDao datasetDao = mock(DatasetDao.class);
+    private static final DatasetVersionExportDao datasetVersionExportDao = mock(DatasetVersionExportDao.class);
+    private static final FileMetaDao fileMetaDao = mock(FileMetaDao.class);
+    private static final Validator validator = mock(Validator.class);
+
+    private final ResourceExtension EXT = ResourceExtension.builder()
+        .addResource(new VersionExportStreamingResource(datasetDao, datasetVersionExportDao, fileMetaDao, Jackson.newObjectMapper(), validator))
+        .build();
+
+    @BeforeEach
+    public void setUp() {
+        var dataset = new Dataset();
+        dataset.setNbn(NBN);
+        when(datasetDao.findByNbn(NBN)).thenReturn(Optional.of(dataset));
+        doAnswer(invocation -> {
+            invocation.<DatasetVersionExport> getArgument(0).setId(1L);
+            return null;
+        }).when(datasetVersionExportDao).add(any(DatasetVersionExport.class));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        Mockito.reset(datasetDao, datasetVersionExportDao, fileMetaDao, validator);
+    }
+
+    private static String fileMeta(int i) {
+        return String.format("{\"filepath\": \"data/file%d.txt\", \"fileUri\": \"file:///file%d.txt\", \"byteSize\": %d, \"sha1sum\": \"sha1sum%d\"}", i, i, i, i);
+    }
+
+    private Response post(String body) {
+        return EXT.target(String.format("/dataset/%s/version:stream", NBN))
+            .request()
+            .post(Entity.entity(body, MediaType.APPLICATION_JSON));
+    }
+
+    @Test
+    public void addVersionExport_should_add_file_metas_in_batches() {
+        var batchSizes = new ArrayList<Integer>();
+        doAnswer(invocation -> {
+            batchSizes.add(invocation.<List<FileMeta>> getArgument(0).size());
+            return null;
+        }).when(fileMetaDao).addAll(anyList());
+        var fileMetas = new ArrayList<String>();
+        for (int i = 0; i < 2500; i++) {
+            fileMetas.add(fileMeta(i));
+        }
+
+        var response = post("{\"ocflObjectVersionNumber\": 1, \"fileMetas\": [" + String.join(",", fileMetas) + "]}");
+
+        assertThat(response.getStatus()).isEqualTo(200);
+        assertThat(batchSizes).containsExactly(1000, 1000, 500);
+        verify(fileMetaDao, times(2)).flushAndClear();
+        verify(datasetVersionExportDao, times(2)).getReference(1L);
+        verify(validator, times(2501)).validate(any());
+    }
+
+    @Test
+    public void addVersionExport_should_reject_file_metas_that_are_not_the_last_member() {
+        var response = post("{\"ocflObjectVersionNumber\": 1, \"fileMetas\": [" + fileMeta(1) + "], \"bagId\": \"urn:uuid:ff1fc8dd-ee15-4e1c-9f73-c1a817bdb05c\"}");
+
+        assertThat(response.getStatus()).isEqualTo(400);
+        assertThat(response.readEntity(String.class)).contains("fileMetas must be the last member of the version export");
+    }
+
+    @Test
+    public void addVersionExport_should_reject_missing_version_number() {
+        var response = post("{\"fileMetas\": [" + fileMeta(1) + "], \"ocflObjectVersionNumber\": 1}");
+
+        assertThat(response.getStatus()).isEqualTo(400);
+        assertThat(response.readEntity(String.class)).contains("ocflObjectVersionNumber must come before fileMetas");
+        verify(datasetVersionExportDao, never()).add(any());
+    }
+
+    @Test
+    public void addVersionExport_should_reject_file_metas_that_are_not_an_array() {
+        var response = post("{\"ocflObjectVersionNumber\": 1, \"fileMetas\": " + fileMeta(1) + "}");
+
+        assertThat(response.getStatus()).isEqualTo(400);
+        assertThat(response.readEntity(String.class)).contains("fileMetas must be an array");
+        verify(fileMetaDao, never()).addAll(anyList());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void addVersionExport_should_reject_invalid_file_meta() {
+        var path = mock(Path.class);
+        when(path.toString()).thenReturn("filepath");
+        var violation = (ConstraintViolation<FileMetaDto>) mock(ConstraintViolation.class);
+        when(violation.getPropertyPath()).thenReturn(path);
+        when(violation.getMessage()).thenReturn("must not be null");
+        // The validator also gets the version export, so the matcher must check the type
+        doReturn(Set.of(violation)).when(validator).validate(argThat(dto -> dto instanceof FileMetaDto && ((FileMetaDto) dto).getFilepath() == null));
+
+        var response = post("{\"ocflObjectVersionNumber\": 1, \"fileMetas\": [" + fileMeta(0) + ", {\"byteSize\": 1}]}");
+
+        assertThat(response.getStatus()).isEqualTo(400);
+        assertThat(response.readEntity(String.class)).contains("fileMetas[1].filepath must not be null");
+        verify(fileMetaDao, never()).addAll(anyList());
+    }
+}